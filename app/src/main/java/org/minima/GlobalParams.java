@@ -63,6 +63,16 @@ public class GlobalParams {
 	 */
 	public static final MiniNumber MINIMA_MMR_PROOF_HISTORY = new MiniNumber(256);
 	
+	/**
+	 * Max total size of the mempool in bytes - lowest burn and newest transactions are removed first
+	 */
+	public static final long MINIMA_MEMPOOL_MAX_SIZE = 8 * 1024 * 1024;
+	
+	/**
+	 * Max time a transaction can stay in the mempool - 1 day
+	 */
+	public static final long MINIMA_MEMPOOL_MAX_AGE = 24 * 60 * 60 * 1000;
+	
 	/**
 	 * Are we debugging the chain in short chain mode..
 	 */
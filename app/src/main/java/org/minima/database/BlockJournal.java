@@ -0,0 +1,109 @@
+package org.minima.database;
+
+import java.util.ArrayList;
+
+import org.minima.database.coindb.CoinDB;
+import org.minima.database.coindb.CoinDBRow;
+import org.minima.database.txpowdb.TxPOWDBRow;
+import org.minima.objects.base.MiniInteger;
+import org.minima.objects.base.MiniNumber;
+
+/**
+ * The changes a block made to the TxPoWDB and CoinDB when it was added to the main chain.
+ *
+ * Stores the state of each row before the block touched it, so the block can be
+ * taken off the chain on a re-org without resetting everything from that block onwards.
+ *
+ * @author spartacusrex
+ */
+public class BlockJournal {
+
+	/**
+	 * A TxPoW row before the block
+	 */
+	private class TxPoWRowState {
+		TxPOWDBRow 	mRow;
+		boolean 	mInBlock;
+		boolean 	mMainChain;
+		MiniNumber 	mInBlockNumber;
+
+		public TxPoWRowState(TxPOWDBRow zRow) {
+			mRow 			= zRow;
+			mInBlock 		= zRow.isInBlock();
+			mMainChain 		= zRow.isMainChainBlock();
+			mInBlockNumber 	= zRow.getInBlockNumber();
+		}
+
+		public void restore() {
+			mRow.setIsInBlock(mInBlock);
+			mRow.setMainChainBlock(mMainChain);
+			mRow.setInBlockNumber(mInBlockNumber);
+		}
+	}
+
+	/**
+	 * A Coin row before the block - or that there was none
+	 */
+	private class CoinRowState {
+		CoinDBRow 	mRow;
+		boolean 	mExisted;
+		boolean 	mSpent;
+		boolean 	mInBlock;
+		MiniNumber 	mInBlockNumber;
+		MiniInteger mMMREntry;
+
+		public CoinRowState(CoinDBRow zRow, boolean zExisted) {
+			mRow 			= zRow;
+			mExisted 		= zExisted;
+			mSpent 			= zRow.isSpent();
+			mInBlock 		= zRow.isInBlock();
+			mInBlockNumber 	= zRow.getInBlockNumber();
+			mMMREntry 		= zRow.getMMREntry();
+		}
+
+		public void restore(CoinDB zCoinDB) {
+			if(!mExisted) {
+				zCoinDB.removeCoin(mRow.getCoin().getCoinID());
+				return;
+			}
+
+			mRow.setIsSpent(mSpent);
+			mRow.setIsInBlock(mInBlock);
+			mRow.setInBlockNumber(mInBlockNumber);
+			mRow.setMMREntry(mMMREntry);
+		}
+	}
+
+	ArrayList<TxPoWRowState> mTxPoWRows = new ArrayList<>();
+
+	ArrayList<CoinRowState> mCoinRows = new ArrayList<>();
+
+	public BlockJournal() {}
+
+	/**
+	 * Call BEFORE changing the row
+	 */
+	public void addTxPoWRow(TxPOWDBRow zRow) {
+		mTxPoWRows.add(new TxPoWRowState(zRow));
+	}
+
+	/**
+	 * Call BEFORE changing the row - zExisted is false if the block created it
+	 */
+	public void addCoinRow(CoinDBRow zRow, boolean zExisted) {
+		mCoinRows.add(new CoinRowState(zRow, zExisted));
+	}
+
+	/**
+	 * Put everything back how it was before the block - in reverse order
+	 */
+	public void undo(CoinDB zCoinDB) {
+		for(int i=mCoinRows.size()-1;i>=0;i--) {
+			mCoinRows.get(i).restore(zCoinDB);
+		}
+
+		for(int i=mTxPoWRows.size()-1;i>=0;i--) {
+			mTxPoWRows.get(i).restore();
+		}
+	}
+}
@@ -4,11 +4,21 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.ref.SoftReference;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.ArrayList;
-import java.util.Enumeration;
+import java.util.Comparator;
 import java.util.Hashtable;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.minima.GlobalParams;
 import org.minima.database.coindb.CoinDB;
@@ -18,6 +28,8 @@ import org.minima.database.mmr.MMRData;
 import org.minima.database.mmr.MMREntry;
 import org.minima.database.mmr.MMRProof;
 import org.minima.database.mmr.MMRSet;
+import org.minima.database.txpowdb.MemPool;
+import org.minima.database.txpowdb.MemPoolEntry;
 import org.minima.database.txpowdb.TxPOWDBRow;
 import org.minima.database.txpowdb.TxPowDB;
 import org.minima.database.txpowdb.java.FastJavaDB;
@@ -43,7 +55,7 @@ import org.minima.objects.greet.SyncPacket;
 import org.minima.objects.proofs.TokenProof;
 import org.minima.system.brains.BackupManager;
 import org.minima.system.brains.ConsensusHandler;
-import org.minima.system.input.functions.gimme50;
+import org.minima.system.brains.TxPoWWriter;
 import org.minima.system.txpow.GenesisTxPOW;
 import org.minima.system.txpow.TxPoWChecker;
 import org.minima.system.txpow.TxPoWMiner;
@@ -80,11 +92,48 @@ public class MinimaDB {
 	 */
 	BackupManager mBackup = null;
 	
+	/**
+	 * Backup writes and deletes - in order on their own thread
+	 */
+	TxPoWWriter mTxPoWWriter = null;
+	
 	/**
 	 * When you mine.. You can't use these INPUTS in your transactions
 	 */
 	Hashtable<String,Transaction> mMiningTransactions = new Hashtable<>();
 	
+	/**
+	 * The inputs of the mining transactions - CoinID -> how many use it
+	 */
+	Hashtable<String,Integer> mMiningInputs = new Hashtable<>();
+	
+	/**
+	 * The mempool transactions that passed the pre-check for a block on the current tip - 
+	 * cleared when the tip changes. Failures are not kept as a transaction can become 
+	 * valid later at the same tip (block time, PRNG)
+	 */
+	MiniData mTemplateTip = null;
+	Hashtable<String,Boolean> mTemplateChecked = new Hashtable<>();
+	
+	/**
+	 * The serialised SyncPackage for a new peer and its size - kept until the tip changes.
+	 * Soft so it can go if memory is short.
+	 */
+	MiniData mSyncPackageTip 				= null;
+	SoftReference<byte[]> mSyncPackageData 	= new SoftReference<>(null);
+	int mSyncPackageSize 					= -1;
+	
+	/**
+	 * The same for the header only SyncPackage of a header first sync
+	 */
+	MiniData mHeaderPackageTip 				= null;
+	SoftReference<byte[]> mHeaderPackageData 	= new SoftReference<>(null);
+	
+	/**
+	 * Threads that check the mempool transactions in parallel
+	 */
+	ExecutorService mTemplateCheckers = null;
+	
 	/**
 	 * Main Constructor
 	 */
@@ -110,6 +159,10 @@ public class MinimaDB {
 		return mBackup;
 	}
 	
+	public void setTxPoWWriter(TxPoWWriter zWriter) {
+		mTxPoWWriter = zWriter;
+	}
+	
 	/**
 	 * Set up this DB from GENESIS
 	 */ 
@@ -157,7 +210,7 @@ public class MinimaDB {
 		mMainTree.setTreeRoot(root);
 				
 		//Back it up..
-		getBackup().backupTxpow(gen); 
+		mTxPoWWriter.backupTxPoW(gen); 
 	}
 	
 	public TxPoW getTxPOW(MiniData zTxPOWID) {
@@ -212,6 +265,9 @@ public class MinimaDB {
 				//Set the new state..
 				unblock.setBlockState(TxPOWDBRow.TXPOWDBROW_STATE_FULL);
 				newfullblock = true;
+				
+				//The block can now be checked - if it is in the tree
+				mMainTree.addCheckNode(mMainTree.findNode(unblock.getTxPOW().getTxPowID()));
 			}
 		}
 	
@@ -220,14 +276,9 @@ public class MinimaDB {
 			//get the current tip
 			BlockTreeNode tip = mMainTree.getChainTip();
 			
-			//Get the OLD chain..
-			ArrayList<BlockTreeNode> oldlist = mMainTree.getAsList();
-			
 			//Now calculate the states of each of the blocks in the tree.. 
+			//New VALID blocks add their weight to their parents and move the tip as they go
 			mMainTree.sortBlockTreeNodeStates(this);
-	
-			//Now recalculate the weights only using Valid nodes..
-			mMainTree.resetWeights();
 			
 			//Is there a new tip..
 			BlockTreeNode newtip = mMainTree.getChainTip();
@@ -236,47 +287,54 @@ public class MinimaDB {
 				return;
 			}
 			
-			//Now cycle down the main chain
-			ArrayList<BlockTreeNode> list = new ArrayList<>();
+			//Find the crossover - the last block the old and new chain share
+			BlockTreeNode crossover = mMainTree.getCrossover(tip, newtip);
+			
+			//Take the old blocks off the chain one at a time if we can..
+			boolean undone = (crossover != null) && undoBlocksToCrossover(tip, crossover);
 			
-			//Find how far back to cull the db coins - where is the crossover..
+			//Now cycle down the new chain
+			ArrayList<BlockTreeNode> list = new ArrayList<>();
 			BlockTreeNode currentblock = newtip;
-			MiniNumber lastblock       = MiniNumber.ZERO;
-			boolean found              = false;
-			while(currentblock!=null && !found) {
+			while(currentblock!=null) {
+				//Already on the chain..
+				if(undone && currentblock == crossover) {
+					break;
+				}
+				
 				//Add to the list
 				list.add(0,currentblock);
 				
-				//Search for a crossover
-				for(BlockTreeNode node : oldlist) {
-					//Check if the same..
-					if(node.getTxPowID().isEqual(currentblock.getTxPowID())) {
-						//Found crossover
-						lastblock = currentblock.getBlockNumber();
-						found = true;
-						break;
-				
-					}else if(node.getBlockNumber().isLess(currentblock.getBlockNumber())) {
-						//No way back..
-						break;
-					}
+				//Re-add the crossover too when resetting..
+				if(currentblock == crossover) {
+					break;
 				}
 				
-				//None found go deeper..
 				currentblock = currentblock.getParent();
 			}
 			
-			//Reset transaction from that block onwards
-			mTxPOWDB.resetBlocksFromOnwards(lastblock);
-			
-			//Reset coins from that block onwards
-			mCoinDB.resetCoinsFomOnwards(lastblock);
+			//The old way.. Reset everything from the crossover onwards
+			if(!undone) {
+				MiniNumber lastblock = MiniNumber.ZERO;
+				if(crossover != null) {
+					lastblock = crossover.getBlockNumber();
+				}
+				
+				//Reset transaction from that block onwards
+				mTxPOWDB.resetBlocksFromOnwards(lastblock);
+				
+				//Reset coins from that block onwards
+				mCoinDB.resetCoinsFomOnwards(lastblock);
+			}
 			
 			//Now sort
 			for(BlockTreeNode treenode : list) {
 				//Get the Block
 				TxPoW txpow = treenode.getTxPow();
 		
+				//Keep track of what changes..
+				BlockJournal journal = new BlockJournal();
+				
 				//Get the database txpow..
 				TxPOWDBRow trow = mTxPOWDB.findTxPOWDBRow(txpow.getTxPowID());
 				
@@ -284,12 +342,13 @@ public class MinimaDB {
 				MiniNumber block = txpow.getBlockNumber();
 				
 				//Set the details
+				journal.addTxPoWRow(trow);
 				trow.setMainChainBlock(true);
 				trow.setIsInBlock(true);
 				trow.setInBlockNumber(block);
 				
 				//Check for coins in the MMR
-				scanMMRSetForCoins(treenode.getMMRSet());
+				scanMMRSetForCoins(treenode.getMMRSet(), journal);
 				
 				//Now the Txns..
 				ArrayList<MiniData> txpowlist = txpow.getBlockTransactions();
@@ -297,11 +356,15 @@ public class MinimaDB {
 					trow = mTxPOWDB.findTxPOWDBRow(txid);
 					if(trow!=null) {
 						//Set that it is in this block
+						journal.addTxPoWRow(trow);
 						trow.setMainChainBlock(false);
 						trow.setIsInBlock(true);
 						trow.setInBlockNumber(block);
 					}
 				}
+				
+				//Store it with the block
+				treenode.setJournal(journal);
 			}
 			
 			/**
@@ -327,7 +390,7 @@ public class MinimaDB {
 				row.setMainChainBlock(false);
 				
 				//And delete / move to different folder any file backups..
-				getBackup().deleteTxpow(node.getTxPow());
+				mTxPoWWriter.deleteTxPoW(node.getTxPow());
 			}
 			
 			//Remove all TXPowRows that are less than the cascade node.. they will not be used again..
@@ -338,7 +401,7 @@ public class MinimaDB {
 			
 			//Remove the deleted txpow..
 			for(TxPOWDBRow remrow : remrows) {
-				getBackup().deleteTxpow(remrow.getTxPOW());
+				mTxPoWWriter.deleteTxPoW(remrow.getTxPOW());
 			}
 			
 			//Remove all the coins no longer needed.. SPENT
@@ -346,7 +409,38 @@ public class MinimaDB {
 		}
 	}
 	
+	/**
+	 * Undo the old chain blocks from the tip back to the crossover. 
+	 * Only possible if every one of them has a journal.
+	 * 
+	 * @return true if the blocks were undone
+	 */
+	private boolean undoBlocksToCrossover(BlockTreeNode zOldTip, BlockTreeNode zCrossover) {
+		//First check they can all be undone
+		BlockTreeNode current = zOldTip;
+		while(current != zCrossover) {
+			if(current == null || current.getJournal() == null) {
+				return false;
+			}
+			current = current.getParent();
+		}
+		
+		//Now undo them - newest first
+		current = zOldTip;
+		while(current != zCrossover) {
+			current.getJournal().undo(mCoinDB);
+			current.setJournal(null);
+			current = current.getParent();
+		}
+		
+		return true;
+	}
+	
 	public void scanMMRSetForCoins(MMRSet zMMRSet) {
+		scanMMRSetForCoins(zMMRSet, null);
+	}
+	
+	public void scanMMRSetForCoins(MMRSet zMMRSet, BlockJournal zJournal) {
 		//Check the MMR for any coins..
 		ArrayList<MMREntry> entries = zMMRSet.getZeroRow();
 		for(MMREntry mmrcoin : entries) {
@@ -372,12 +466,18 @@ public class MinimaDB {
 				}
 				
 				//Add to our list - or return the already existing  version..
+				boolean existed = (getCoinDB().getCoinRow(cc.getCoinID()) != null);
 				CoinDBRow inrow = getCoinDB().addCoinRow(cc);
 				inrow.setRelevant(rel);
 				
 				//Exists already - only want to update if something has changed..
 				//Same coin can be in the MMR for multiple blocks.. only do this ONCHANGE
 				if(!inrow.isInBlock() || inrow.isSpent() != spent) {
+					//Keep the old state..
+					if(zJournal != null) {
+						zJournal.addCoinRow(inrow, existed);
+					}
+					
 					inrow.setIsSpent(spent);
 					inrow.setIsInBlock(true);
 					inrow.setInBlockNumber(zMMRSet.getBlockTime());
@@ -515,8 +615,29 @@ public class MinimaDB {
 	 * @return
 	 */
 	public TxPOWDBRow addNewTxPow(TxPoW zTxPOW) {
-		//That's that
-		return mTxPOWDB.addTxPOWDBRow(zTxPOW);
+		//Add it..
+		TxPOWDBRow row = mTxPOWDB.addTxPOWDBRow(zTxPOW);
+		
+		//Keep the mempool in bounds - never the one just added
+		ArrayList<TxPOWDBRow> evict = mTxPOWDB.getMemPool().getEvictions(
+				GlobalParams.MINIMA_MEMPOOL_MAX_SIZE, GlobalParams.MINIMA_MEMPOOL_MAX_AGE, zTxPOW.getTxPowID());
+		for(TxPOWDBRow evictrow : evict) {
+			TxPoW txpow = evictrow.getTxPOW();
+			
+			//Still needed by the tree
+			if(mMainTree.findNode(txpow.getTxPowID()) != null) {
+				continue;
+			}
+			
+			MinimaLogger.log("MemPool evict TxPoW "+txpow.getTxPowID());
+			
+			mTxPOWDB.removeTxPOW(txpow.getTxPowID());
+			if(mTxPoWWriter != null) {
+				mTxPoWWriter.deleteTxPoW(txpow);
+			}
+		}
+		
+		return row;
 	}
 	
 	public BlockTreeNode hardAddTxPOWBlock(TxPoW zTxPoW, MMRSet zMMR, boolean zCascade) {
@@ -574,6 +695,14 @@ public class MinimaDB {
 		//Add it..
 		mMiningTransactions.put(hash, zTrans);
 		
+		//And index the inputs
+		ArrayList<Coin> inputs = zTrans.getAllInputs();
+		for(Coin input : inputs) {
+			String coinid = input.getCoinID().to0xString();
+			Integer count = mMiningInputs.get(coinid);
+			mMiningInputs.put(coinid, count == null ? 1 : count + 1);
+		}
+		
 		return true;
 	}
 	
@@ -581,22 +710,26 @@ public class MinimaDB {
 		//Hash it..
 		MiniData transhash = Crypto.getInstance().hashObject(zTrans, 160);
 		String hash        = transhash.to0xString();
-		mMiningTransactions.remove(hash);
+		Transaction prev   = mMiningTransactions.remove(hash);
+		if(prev == null) {
+			return;
+		}
+		
+		//Remove the inputs
+		ArrayList<Coin> inputs = prev.getAllInputs();
+		for(Coin input : inputs) {
+			String coinid = input.getCoinID().to0xString();
+			Integer count = mMiningInputs.get(coinid);
+			if(count == null || count <= 1) {
+				mMiningInputs.remove(coinid);
+			}else {
+				mMiningInputs.put(coinid, count - 1);
+			}
+		}
 	}
 	
 	public boolean checkInputForMining(MiniData zCoinID) {
-		Enumeration<Transaction> alltrans = mMiningTransactions.elements();
-		while(alltrans.hasMoreElements()) {
-			Transaction trans = alltrans.nextElement();
-			ArrayList<Coin> inputs = trans.getAllInputs();
-			for(Coin input : inputs) {
-				if(zCoinID.isEqual(input.getCoinID())) {
-					return true;
-				}
-			}
-		}
-		
-		return false;
+		return mMiningInputs.containsKey(zCoinID.to0xString());
 	}
 	
 	
@@ -609,7 +742,7 @@ public class MinimaDB {
 		MiniNumber top = getTopBlock();
 		
 		//Check NONE of these are in the mempool.
-		ArrayList<Coin> memcoins = getMempoolCoins();
+		MemPool mempool = getTxPowDB().getMemPool();
 				
 		//Do we have any inputs with this address..
 		ArrayList<CoinDBRow> relevant = getCoinDB().getCompleteRelevant();
@@ -619,16 +752,10 @@ public class MinimaDB {
 				if(depth.isMoreEqual(GlobalParams.MINIMA_CONFIRM_DEPTH)) {
 					//Is this a simple address..
 					if(getUserDB().isSimpleAddress(row.getCoin().getAddress())) {
-						boolean found   = false;
 						MiniData coinid = row.getCoin().getCoinID();
 						
 						//Check in MemPool
-						for(Coin memcoin : memcoins) {
-							if(memcoin.getCoinID().isEqual(coinid)) {
-								found = true;
-								break;
-							}
-						}
+						boolean found = mempool.isCoinUsed(coinid);
 						
 						//Check in Mining
 						if(!found) {
@@ -648,14 +775,12 @@ public class MinimaDB {
 	}
 	
 	public boolean checkTransactionForMempoolCoins(Transaction zTransaction) {
-		ArrayList<Coin> memcoins = getMempoolCoins();
+		MemPool mempool = getTxPowDB().getMemPool();
 		ArrayList<Coin> inputs = zTransaction.getAllInputs();
 		for(Coin in : inputs) {
-			for(Coin mem : memcoins) {
-				if(in.getCoinID().isEqual(mem.getCoinID())) {
-					//No GOOD!
-					return true;
-				}
+			if(mempool.isCoinUsed(in.getCoinID())) {
+				//No GOOD!
+				return true;
 			}
 		}
 		
@@ -663,22 +788,7 @@ public class MinimaDB {
 	}
 	
 	public ArrayList<Coin> getMempoolCoins(){
-		ArrayList<Coin> coins = new ArrayList<>();
-		
-		ArrayList<TxPOWDBRow> rows = getTxPowDB().getAllUnusedTxPOW();
-		for(TxPOWDBRow row : rows) {
-			TxPoW txpow = row.getTxPOW();
-			if(txpow.isTransaction()) {
-				ArrayList<Coin> inputs = txpow.getTransaction().getAllInputs();	
-				for(Coin cc : inputs) {
-					if(!cc.getCoinID().isEqual(gimme50.COINID_INPUT)) {
-						coins.add(cc);	
-					}
-				}
-			}
-		}
-		
-		return coins;
+		return getTxPowDB().getMemPool().getAllCoins();
 	}
 	
 	public Hashtable<String, MiniNumber> getTotalUnusedAmount() {
@@ -1085,8 +1195,8 @@ public class MinimaDB {
 			}
 		}
 		
-		//Set the current Transaction List!
-		ArrayList<TxPOWDBRow> unused = mTxPOWDB.getAllUnusedTxPOW();
+		//Set the current Transaction List! - best first, and only those that could be valid
+		ArrayList<TxPOWDBRow> unused = getTemplateCandidates(tip, txpow);
 		for(TxPOWDBRow row : unused) {
 			//Current MAX transactions.. #TODO.. this needs to be dynamic..
 			if(txncounter.isMore(MiniNumber.SIXTYFOUR)) {
@@ -1114,6 +1224,9 @@ public class MinimaDB {
 				}else {
 					//Could be a transaction that is only valid in a different  branch.					
 					MinimaLogger.log("Invalid TXPOW found. (leaving.. could be in other branch) "+txp.getTxPowID());
+					
+					//Pre-check it again next time
+					mTemplateChecked.remove(txp.getTxPowID().to0xString());
 				}
 			}else {
 				//A block with no transaction.. make sure within range..
@@ -1136,6 +1249,116 @@ public class MinimaDB {
 		return txpow;
 	}
 	
+	/**
+	 * Get the unused TxPoW for a new block. Transactions are ordered by burn then age, and 
+	 * any that have not passed on this tip yet are checked in parallel against the tip MMRSet 
+	 * (read-only) with the block being built - its number, time and PRNG. Ones that fail are 
+	 * left out of this block only.
+	 */
+	private ArrayList<TxPOWDBRow> getTemplateCandidates(BlockTreeNode zTip, final TxPoW zBlock) {
+		//New tip - everything needs checking again
+		if(mTemplateTip == null || !mTemplateTip.isEqual(zTip.getTxPowID())) {
+			mTemplateTip = zTip.getTxPowID();
+			mTemplateChecked.clear();
+		}
+		
+		ArrayList<TxPOWDBRow> txns   = new ArrayList<>();
+		ArrayList<TxPOWDBRow> blocks = new ArrayList<>();
+		
+		//What needs checking..
+		ArrayList<TxPOWDBRow> unchecked = new ArrayList<>();
+		
+		final Hashtable<String, MiniNumber> burns = new Hashtable<>();
+		ArrayList<MemPoolEntry> unused = mTxPOWDB.getMemPool().getAllEntries();
+		for(MemPoolEntry entry : unused) {
+			TxPOWDBRow row = entry.getRow();
+			TxPoW txp      = row.getTxPOW();
+			if(!txp.isTransaction()) {
+				blocks.add(row);
+				continue;
+			}
+			
+			String txpid  = txp.getTxPowID().to0xString();
+			if(!mTemplateChecked.containsKey(txpid)) {
+				unchecked.add(row);
+			}
+			
+			burns.put(txpid, entry.getBurn());
+			txns.add(row);
+		}
+		
+		//Check the new ones in parallel
+		if(unchecked.size() > 0) {
+			final MMRSet snapshot = zTip.getMMRSet();
+			
+			ArrayList<Callable<Boolean>> checks = new ArrayList<>();
+			for(TxPOWDBRow row : unchecked) {
+				final TxPoW txp = row.getTxPOW();
+				checks.add(new Callable<Boolean>() {
+					@Override
+					public Boolean call() throws Exception {
+						return TxPoWChecker.checkTransactionMMR(txp, MinimaDB.this, zBlock, MiniNumber.ZERO, snapshot, false);
+					}
+				});
+			}
+			
+			try {
+				List<Future<Boolean>> results = getTemplateCheckers().invokeAll(checks);
+				for(int i=0;i<unchecked.size();i++) {
+					TxPoW txp     = unchecked.get(i).getTxPOW();
+					boolean valid = false;
+					try {
+						valid = results.get(i).get();
+					}catch(ExecutionException exc) {
+						MinimaLogger.log("Error checking TxPoW "+txp.getTxPowID()+" "+exc.getCause());
+					}
+					
+					//Only the ones that pass are remembered
+					if(valid) {
+						mTemplateChecked.put(txp.getTxPowID().to0xString(), true);
+					}else {
+						txns.remove(unchecked.get(i));
+					}
+				}
+			}catch(InterruptedException exc) {
+				MinimaLogger.log("Interrupted checking TxPoW for block..");
+			}
+		}
+		
+		//Highest burn first.. then oldest
+		txns.sort(new Comparator<TxPOWDBRow>() {
+			@Override
+			public int compare(TxPOWDBRow o1, TxPOWDBRow o2) {
+				MiniNumber b1 = burns.get(o1.getTxPOW().getTxPowID().to0xString());
+				MiniNumber b2 = burns.get(o2.getTxPOW().getTxPowID().to0xString());
+				int comp = b2.compareTo(b1);
+				if(comp != 0) {
+					return comp;
+				}
+				return Long.compare(o1.getAddedTime(), o2.getAddedTime());
+			}
+		});
+		
+		//And the blocks with no transaction at the end
+		txns.addAll(blocks);
+		
+		return txns;
+	}
+	
+	private ExecutorService getTemplateCheckers() {
+		if(mTemplateCheckers == null) {
+			mTemplateCheckers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable zRunnable) {
+					Thread thread = new Thread(zRunnable, "TxPoW Template Checker");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return mTemplateCheckers;
+	}
+	
 	/**
 	 * Get the current top block number
 	 * 
@@ -1161,6 +1384,11 @@ public class MinimaDB {
 			return sp;
 		}
 		
+		//Use the shared snapshot
+		if(zDeepCopy) {
+			return getSyncPackageCopy();
+		}
+		
 		//Cascade Node
 		MiniNumber casc = getMainTree().getCascadeNode().getTxPow().getBlockNumber();
 		sp.setCascadeNode(casc);
@@ -1174,59 +1402,244 @@ public class MinimaDB {
 			sp.getAllNodes().add(0,new SyncPacket(node, block.isLess(casc)));
 		}
 		
-		//If sending this over the network.. make a copy.. as TxPoW could change (body removed if cascade)
-		if(zDeepCopy) {
-			//Write it out..
-			try {
-				ByteArrayOutputStream baos = new ByteArrayOutputStream();
-				DataOutputStream dos = new DataOutputStream(baos);
-				sp.writeDataStream(dos);
-				dos.flush();
-				
-				//And read it in..
-				ByteArrayInputStream bais = new ByteArrayInputStream(baos.toByteArray());
-				DataInputStream dis = new DataInputStream(bais);
-				
-				//Now read it in.. 
-				SyncPackage spdeep = new SyncPackage();
-				spdeep.readDataStream(dis);
-				
-				//Clean up
-				dos.close();
-				baos.close();
-				
-				dis.close();
-				bais.close();
-				
-				return spdeep;
-				
-			}catch(Exception exc) {
-				exc.printStackTrace();
-			}	
+		return sp;
+	}
+	
+	/**
+	 * Just the headers of the whole tree - no bodies or MMR. For a new peer to check before
+	 * asking for the window. A deep copy read from the shared serialised headers.
+	 */
+	public SyncPackage getHeaderSyncPackage() {
+		//Is there anything.. ?
+		if(getMainTree().getChainRoot()==null) {
+			return new SyncPackage();
+		}
+		
+		byte[] data = getHeaderPackageData();
+		if(data == null) {
+			return new SyncPackage();
+		}
+		
+		SyncPackage sp = readSyncPackage(data);
+		if(sp == null) {
+			return new SyncPackage();
 		}
 		
 		return sp;
 	}
+	
+	private SyncPackage createHeaderSyncPackage() throws IOException {
+		SyncPackage sp = new SyncPackage();
+		
+		//Cascade Node
+		MiniNumber casc = getMainTree().getCascadeNode().getTxPow().getBlockNumber();
+		sp.setCascadeNode(casc);
 		
+		ArrayList<BlockTreeNode> nodes = getMainTree().getAsList();
+		for(BlockTreeNode node : nodes) {
+			TxPoW header = node.getTxPow().getHeaderOnly();
+			
+			//No MMR
+			BlockTreeNode headernode = new BlockTreeNode(header);
+			headernode.setMMRset(null);
+			
+			MiniNumber block = header.getBlockNumber();
+			sp.getAllNodes().add(0,new SyncPacket(headernode, block.isLess(casc)));
+		}
+		
+		return sp;
+	}
+	
 	/**
-	 * Get the Current IBD - total required to log in for a new user
+	 * The full blocks from the cascade node up to this tip - the rest of a header first sync.
+	 * Taken from the shared deep copy of the complete SyncPackage.
+	 *
+	 * @return null if the tip is not in the window of the main chain
 	 */
-	public int getIntroSyncSize() {
-		SyncPackage sp = getSyncPackage();
+	public SyncPackage getWindowSyncPackage(MiniData zTip) {
+		if(getMainTree().getChainRoot()==null) {
+			return null;
+		}
 		
-		//Write it out..
+		SyncPackage full = getSyncPackage(true);
+		
+		SyncPackage sp = new SyncPackage();
+		sp.setCascadeNode(full.getCascadeNode());
+		
+		//Up from the cascade node
+		for(SyncPacket spack : full.getAllNodes()) {
+			if(spack.isCascade()) {
+				continue;
+			}
+			
+			sp.getAllNodes().add(spack);
+			if(spack.getTxPOW().getTxPowID().isEqual(zTip)) {
+				return sp;
+			}
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * A deep copy of the SyncPackage - for sending over the network as the TxPoW could 
+	 * change (body removed if cascade). Read from the shared serialised snapshot.
+	 */
+	private SyncPackage getSyncPackageCopy() {
+		byte[] data = getSyncPackageData();
+		if(data == null) {
+			return getSyncPackage(false);
+		}
+		
+		SyncPackage spdeep = readSyncPackage(data);
+		if(spdeep == null) {
+			return getSyncPackage(false);
+		}
+		
+		return spdeep;
+	}
+	
+	private SyncPackage readSyncPackage(byte[] zData) {
+		try {
+			DataInputStream dis = new DataInputStream(new ByteArrayInputStream(zData));
+			
+			//Now read it in.. 
+			SyncPackage spdeep = new SyncPackage();
+			spdeep.readDataStream(dis);
+			
+			dis.close();
+			
+			return spdeep;
+			
+		}catch(Exception exc) {
+			exc.printStackTrace();
+		}
+		
+		return null;
+	}
+	
+	private byte[] writeSyncPackage(SyncPackage zPackage) {
 		try {
 			ByteArrayOutputStream baos = new ByteArrayOutputStream();
 			DataOutputStream dos = new DataOutputStream(baos);
-			sp.writeDataStream(dos);
+			zPackage.writeDataStream(dos);
 			dos.flush();
 			
-			int len = baos.toByteArray().length;
+			byte[] data = baos.toByteArray();
 			
 			dos.close();
 			baos.close();
 			
-			return len;
+			return data;
+			
+		}catch(Exception exc) {
+			exc.printStackTrace();
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * The serialised header only SyncPackage for the current tip - shared like the complete one
+	 */
+	private byte[] getHeaderPackageData() {
+		BlockTreeNode tip = getMainTree().getChainTip();
+		if(tip == null) {
+			return null;
+		}
+		
+		//Do we have it already..
+		byte[] data = mHeaderPackageData.get();
+		if(data != null && tip.getTxPowID().isEqual(mHeaderPackageTip)) {
+			return data;
+		}
+		
+		try {
+			data = writeSyncPackage(createHeaderSyncPackage());
+		}catch(IOException exc) {
+			MinimaLogger.log("Error creating header SyncPackage "+exc);
+			return null;
+		}
+		
+		if(data == null) {
+			return null;
+		}
+		
+		//Store it..
+		mHeaderPackageTip  = tip.getTxPowID();
+		mHeaderPackageData = new SoftReference<>(data);
+		
+		return data;
+	}
+	
+	/**
+	 * The serialised SyncPackage for the current tip. Made once and shared by all the peers 
+	 * that ask until the tip changes.
+	 */
+	private byte[] getSyncPackageData() {
+		BlockTreeNode tip = getMainTree().getChainTip();
+		if(tip == null) {
+			return null;
+		}
+		
+		//Do we have it already..
+		byte[] data = mSyncPackageData.get();
+		if(data != null && tip.getTxPowID().isEqual(mSyncPackageTip)) {
+			return data;
+		}
+		
+		//Write it out..
+		data = writeSyncPackage(getSyncPackage(false));
+		if(data == null) {
+			return null;
+		}
+		
+		//Store it..
+		mSyncPackageTip  = tip.getTxPowID();
+		mSyncPackageData = new SoftReference<>(data);
+		mSyncPackageSize = data.length;
+		
+		return data;
+	}
+		
+	/**
+	 * Get the Current IBD - total required to log in for a new user
+	 */
+	public int getIntroSyncSize() {
+		BlockTreeNode tip = getMainTree().getChainTip();
+		if(tip == null) {
+			return 0;
+		}
+		
+		//Already counted for this tip..
+		if(mSyncPackageSize >= 0 && tip.getTxPowID().isEqual(mSyncPackageTip)) {
+			return mSyncPackageSize;
+		}
+		
+		//Count it - no need to keep the bytes
+		try {
+			final int[] counter = new int[1];
+			DataOutputStream dos = new DataOutputStream(new OutputStream() {
+				@Override
+				public void write(int zByte) {
+					counter[0]++;
+				}
+				
+				@Override
+				public void write(byte[] zData, int zOffset, int zLength) {
+					counter[0] += zLength;
+				}
+			});
+			getSyncPackage(false).writeDataStream(dos);
+			dos.flush();
+			dos.close();
+			
+			//Only the size is known now
+			mSyncPackageTip  = tip.getTxPowID();
+			mSyncPackageData = new SoftReference<>(null);
+			mSyncPackageSize = counter[0];
+			
+			return mSyncPackageSize;
 			
 		}catch(Exception exc) {
 			exc.printStackTrace();
@@ -25,6 +25,11 @@ public interface CoinDB {
 	 */
 	ArrayList<CoinDBRow> getCompleteRelevant();
 	
+	/**
+	 * How many coins - without copying them
+	 */
+	public int getSize();
+	
 	/**
 	 * Get the coin row with this CoinID or NULL if none present
 	 * 
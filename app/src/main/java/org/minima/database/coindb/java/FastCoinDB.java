@@ -46,6 +46,11 @@ public class FastCoinDB implements CoinDB {
 		}
 		return ret;
 	}
+	
+	@Override
+	public int getSize() {
+		return mCoins.size();
+	}
 
 	@Override
 	public CoinDBRow getCoinRow(MiniData zCoinID) {
@@ -72,7 +77,7 @@ public class FastCoinDB implements CoinDB {
 	@Override
 	public boolean removeCoin(MiniData zCoinID) {
 		String search = zCoinID.to0xString();
-		if(mCoins.contains(search)) {
+		if(mCoins.containsKey(search)) {
 			mCoins.remove(search);
 			return true;
 		}
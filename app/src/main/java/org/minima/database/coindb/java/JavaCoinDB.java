@@ -39,6 +39,11 @@ public class JavaCoinDB implements CoinDB{
 		return retlist;
 	}
 	
+	@Override
+	public int getSize() {
+		return mRows.size();
+	}
+	
 	@Override
 	public CoinDBRow getCoinRow(MiniData zCoinID) {
 		for(CoinDBRow row : mRows) {
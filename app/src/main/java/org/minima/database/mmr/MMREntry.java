@@ -163,7 +163,7 @@ public class MMREntry implements Comparable<MMREntry>, Streamable{
 
 	@Override
 	public int compareTo(MMREntry zEntry) {
-		return zEntry.getEntryNumber().getNumber().compareTo(mEntryNumber.getNumber());
+		return zEntry.getEntryNumber().compareTo(mEntryNumber);
 	}
 
 	@Override
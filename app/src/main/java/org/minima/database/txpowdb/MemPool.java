@@ -0,0 +1,274 @@
+package org.minima.database.txpowdb;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.minima.objects.Coin;
+import org.minima.objects.base.MiniData;
+
+/**
+ * All the TxPoW that are not in a block on the main chain.
+ *
+ * Kept up to date by the TxPowDB as rows go in and out of blocks. Transactions are
+ * indexed by the coins they spend so double spend checks don't need to scan everything,
+ * and the ones that can be evicted are kept in age and burn order so eviction doesn't either.
+ *
+ * @author spartacusrex
+ */
+public class MemPool {
+
+	/**
+	 * TxPoWID -> Entry
+	 */
+	private Hashtable<String, MemPoolEntry> mEntries;
+
+	/**
+	 * CoinID -> The entries that spend it
+	 */
+	private Hashtable<String, ArrayList<MemPoolEntry>> mCoinSpends;
+
+	/**
+	 * Total size in bytes - read from other threads
+	 */
+	private AtomicLong mTotalSize = new AtomicLong(0);
+
+	/**
+	 * Total inputs spent - the same as getAllCoins().size() without the copy
+	 */
+	private int mTotalInputs;
+
+	/**
+	 * The evictable entries - oldest first
+	 */
+	private TreeSet<MemPoolEntry> mByAge;
+
+	/**
+	 * The evictable entries - lowest burn and then newest first
+	 */
+	private TreeSet<MemPoolEntry> mByBurn;
+
+	private long mSequence = 0;
+
+	private static final Comparator<MemPoolEntry> AGE_ORDER = new Comparator<MemPoolEntry>() {
+		@Override
+		public int compare(MemPoolEntry o1, MemPoolEntry o2) {
+			int comp = Long.compare(o1.getAddedTime(), o2.getAddedTime());
+			if(comp != 0) {
+				return comp;
+			}
+			return Long.compare(o1.mSequence, o2.mSequence);
+		}
+	};
+
+	private static final Comparator<MemPoolEntry> BURN_ORDER = new Comparator<MemPoolEntry>() {
+		@Override
+		public int compare(MemPoolEntry o1, MemPoolEntry o2) {
+			int comp = o1.getBurn().compareTo(o2.getBurn());
+			if(comp != 0) {
+				return comp;
+			}
+			comp = Long.compare(o2.getAddedTime(), o1.getAddedTime());
+			if(comp != 0) {
+				return comp;
+			}
+			return Long.compare(o2.mSequence, o1.mSequence);
+		}
+	};
+
+	public MemPool() {
+		clear();
+	}
+
+	public void clear() {
+		mEntries 	= new Hashtable<>();
+		mCoinSpends = new Hashtable<>();
+		mByAge 		= new TreeSet<>(AGE_ORDER);
+		mByBurn 	= new TreeSet<>(BURN_ORDER);
+		mTotalSize.set(0);
+		mTotalInputs = 0;
+	}
+
+	public void add(TxPOWDBRow zRow) {
+		String txpowid = zRow.getTxPOW().getTxPowID().to0xString();
+		if(mEntries.containsKey(txpowid)) {
+			return;
+		}
+
+		MemPoolEntry entry = new MemPoolEntry(zRow);
+		entry.mSequence = mSequence++;
+		mEntries.put(txpowid, entry);
+		mTotalSize.addAndGet(entry.getSize());
+		mTotalInputs += entry.getInputs().size();
+
+		if(entry.isEvictable()) {
+			mByAge.add(entry);
+			mByBurn.add(entry);
+		}
+
+		//Index the inputs
+		for(Coin cc : entry.getInputs()) {
+			String coinid = cc.getCoinID().to0xString();
+			ArrayList<MemPoolEntry> spends = mCoinSpends.get(coinid);
+			if(spends == null) {
+				spends = new ArrayList<>();
+				mCoinSpends.put(coinid, spends);
+			}
+			spends.add(entry);
+		}
+	}
+
+	public void remove(MiniData zTxPoWID) {
+		remove(zTxPoWID.to0xString());
+	}
+
+	public void remove(String zTxPoWID) {
+		MemPoolEntry entry = mEntries.remove(zTxPoWID);
+		if(entry == null) {
+			return;
+		}
+
+		mTotalSize.addAndGet(-entry.getSize());
+		mTotalInputs -= entry.getInputs().size();
+
+		mByAge.remove(entry);
+		mByBurn.remove(entry);
+
+		//Remove from the index
+		for(Coin cc : entry.getInputs()) {
+			String coinid = cc.getCoinID().to0xString();
+			ArrayList<MemPoolEntry> spends = mCoinSpends.get(coinid);
+			if(spends != null) {
+				spends.remove(entry);
+				if(spends.isEmpty()) {
+					mCoinSpends.remove(coinid);
+				}
+			}
+		}
+	}
+
+	public boolean contains(MiniData zTxPoWID) {
+		return mEntries.containsKey(zTxPoWID.to0xString());
+	}
+
+	public MemPoolEntry getEntry(MiniData zTxPoWID) {
+		return mEntries.get(zTxPoWID.to0xString());
+	}
+
+	public ArrayList<MemPoolEntry> getAllEntries() {
+		return new ArrayList<>(mEntries.values());
+	}
+
+	public ArrayList<TxPOWDBRow> getAllRows() {
+		ArrayList<TxPOWDBRow> ret = new ArrayList<>();
+		Enumeration<MemPoolEntry> entries = mEntries.elements();
+		while(entries.hasMoreElements()) {
+			ret.add(entries.nextElement().getRow());
+		}
+		return ret;
+	}
+
+	/**
+	 * Is a mempool transaction already spending this coin
+	 */
+	public boolean isCoinUsed(MiniData zCoinID) {
+		return mCoinSpends.containsKey(zCoinID.to0xString());
+	}
+
+	/**
+	 * All the mempool transactions spending this coin
+	 */
+	public ArrayList<MemPoolEntry> getCoinSpends(MiniData zCoinID) {
+		ArrayList<MemPoolEntry> spends = mCoinSpends.get(zCoinID.to0xString());
+		if(spends == null) {
+			return new ArrayList<>();
+		}
+		return new ArrayList<>(spends);
+	}
+
+	/**
+	 * All the coins spent by mempool transactions
+	 */
+	public ArrayList<Coin> getAllCoins() {
+		ArrayList<Coin> coins = new ArrayList<>();
+		Enumeration<MemPoolEntry> entries = mEntries.elements();
+		while(entries.hasMoreElements()) {
+			coins.addAll(entries.nextElement().getInputs());
+		}
+		return coins;
+	}
+
+	public int getSize() {
+		return mEntries.size();
+	}
+
+	public long getTotalSize() {
+		return mTotalSize.get();
+	}
+
+	public int getTotalInputs() {
+		return mTotalInputs;
+	}
+
+	/**
+	 * Which transactions should be removed to keep the mempool in bounds.
+	 *
+	 * Anything older than the max age goes. Then if still too big the lowest burn
+	 * and then the newest go first - so a flood of new transactions can't push out the old.
+	 * Blocks are never evicted here - even if they are transactions too.
+	 *
+	 * Only looks at the head of the age order and, when over size, the head of the burn
+	 * order - so the cost is the number evicted, not the size of the mempool.
+	 *
+	 * @param zMaxSize Max total bytes
+	 * @param zMaxAge Max age in milliseconds
+	 * @param zKeep A TxPoW that must not be evicted - the one just added - can be null
+	 * @return the rows to remove
+	 */
+	public ArrayList<TxPOWDBRow> getEvictions(long zMaxSize, long zMaxAge, MiniData zKeep) {
+		ArrayList<TxPOWDBRow> evict = new ArrayList<>();
+
+		long mintime = System.currentTimeMillis() - zMaxAge;
+		long size    = mTotalSize.get();
+
+		//Too old..
+		for(MemPoolEntry entry : mByAge) {
+			if(entry.getAddedTime() >= mintime) {
+				break;
+			}
+
+			if(isKeep(entry, zKeep)) {
+				continue;
+			}
+
+			evict.add(entry.getRow());
+			size -= entry.getSize();
+		}
+
+		//Still too big..
+		if(size > zMaxSize) {
+			for(MemPoolEntry entry : mByBurn) {
+				if(size <= zMaxSize) {
+					break;
+				}
+
+				//Already going or must stay
+				if(entry.getAddedTime() < mintime || isKeep(entry, zKeep)) {
+					continue;
+				}
+
+				evict.add(entry.getRow());
+				size -= entry.getSize();
+			}
+		}
+
+		return evict;
+	}
+
+	private boolean isKeep(MemPoolEntry zEntry, MiniData zKeep) {
+		return zKeep != null && zEntry.getTxPoW().getTxPowID().isEqual(zKeep);
+	}
+}
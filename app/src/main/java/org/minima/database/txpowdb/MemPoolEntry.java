@@ -0,0 +1,113 @@
+package org.minima.database.txpowdb;
+
+import java.util.ArrayList;
+
+import org.minima.objects.Coin;
+import org.minima.objects.Transaction;
+import org.minima.objects.TxPoW;
+import org.minima.objects.base.MiniNumber;
+import org.minima.system.input.functions.gimme50;
+import org.minima.utils.json.JSONObject;
+
+/**
+ * A TxPoW in the mempool and the details needed to order, evict and conflict check it
+ *
+ * @author spartacusrex
+ */
+public class MemPoolEntry {
+
+	TxPOWDBRow mRow;
+
+	/**
+	 * When it was added
+	 */
+	long mAddedTime;
+
+	/**
+	 * Size in bytes
+	 */
+	long mSize;
+
+	/**
+	 * How much Minima the Burn Transaction burns
+	 */
+	MiniNumber mBurn;
+
+	/**
+	 * The coins it spends
+	 */
+	ArrayList<Coin> mInputs;
+
+	/**
+	 * Order it was added to the MemPool - so no two entries are equal in the eviction order
+	 */
+	long mSequence;
+
+	public MemPoolEntry(TxPOWDBRow zRow) {
+		mRow 		= zRow;
+		mAddedTime 	= zRow.getAddedTime();
+
+		TxPoW txpow = zRow.getTxPOW();
+		mSize 		= txpow.getSizeinBytes();
+		mInputs 	= new ArrayList<>();
+		mBurn       = MiniNumber.ZERO;
+
+		if(txpow.isTransaction()) {
+			//The inputs.. not the testnet ones
+			ArrayList<Coin> inputs = txpow.getTransaction().getAllInputs();
+			for(Coin cc : inputs) {
+				if(!cc.getCoinID().isEqual(gimme50.COINID_INPUT)) {
+					mInputs.add(cc);
+				}
+			}
+
+			//What does it burn..
+			Transaction burn = txpow.getBurnTransaction();
+			if(!burn.isEmpty()) {
+				mBurn = burn.sumInputs(Coin.MINIMA_TOKENID).sub(burn.sumOutputs(Coin.MINIMA_TOKENID));
+			}
+		}
+	}
+
+	public TxPOWDBRow getRow() {
+		return mRow;
+	}
+
+	public TxPoW getTxPoW() {
+		return mRow.getTxPOW();
+	}
+
+	public long getAddedTime() {
+		return mAddedTime;
+	}
+
+	public long getSize() {
+		return mSize;
+	}
+
+	public MiniNumber getBurn() {
+		return mBurn;
+	}
+
+	public ArrayList<Coin> getInputs(){
+		return mInputs;
+	}
+
+	/**
+	 * Can it be evicted - transactions but not blocks
+	 */
+	public boolean isEvictable() {
+		TxPoW txpow = getTxPoW();
+		return txpow.isTransaction() && !txpow.isBlock();
+	}
+
+	public JSONObject toJSON() {
+		JSONObject ret = new JSONObject();
+		ret.put("txpowid", getTxPoW().getTxPowID().to0xString());
+		ret.put("added", mAddedTime);
+		ret.put("size", mSize);
+		ret.put("burn", mBurn.toString());
+		ret.put("inputs", mInputs.size());
+		return ret;
+	}
+}
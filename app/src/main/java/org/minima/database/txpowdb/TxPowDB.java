@@ -47,6 +47,11 @@ public interface TxPowDB {
 	
 	public ArrayList<TxPOWDBRow> getAllUnusedTxPOW();
 	
+	/**
+	 * The unused TxPoW - indexed by the coins they spend
+	 */
+	public MemPool getMemPool();
+	
 	public ArrayList<TxPOWDBRow> getChildBlocksTxPOW(MiniData zParent);
 	
 	public ArrayList<TxPOWDBRow> getAllBlocksMissingTransactions();
@@ -5,6 +5,7 @@ import java.util.Enumeration;
 import java.util.Hashtable;
 
 import org.minima.GlobalParams;
+import org.minima.database.txpowdb.MemPool;
 import org.minima.database.txpowdb.TxPOWDBRow;
 import org.minima.database.txpowdb.TxPowDB;
 import org.minima.objects.TxPoW;
@@ -19,9 +20,18 @@ public class FastJavaDB implements TxPowDB {
 	//The Children of a Parent..
 	private Hashtable<String,ArrayList<TxPOWDBRow>> mChildrenOfParents;
 	
+	//All the rows not in a block
+	private MemPool mMemPool;
+	
 	public FastJavaDB() {
 		mTxPoWRows         = new Hashtable<>();
 		mChildrenOfParents = new Hashtable<>();
+		mMemPool           = new MemPool();
+	}
+	
+	@Override
+	public MemPool getMemPool() {
+		return mMemPool;
 	}
 	
 	@Override
@@ -45,6 +55,10 @@ public class FastJavaDB implements TxPowDB {
 		//Add it..
 		mTxPoWRows.put(search, row);
 		
+		//Not in a block yet..
+		row.mMemPool = mMemPool;
+		mMemPool.add(row);
+		
 		//Add it to the Children List..
 		if(zTxPOW.isBlock()) {
 			//Get the Parent...
@@ -106,7 +120,12 @@ public class FastJavaDB implements TxPowDB {
 		String txpid = zTxPOWID.to0xString();
 		
 		//Remove from the main List
-		mTxPoWRows.remove(txpid);
+		JavaDBRow row = mTxPoWRows.remove(txpid);
+		
+		//And the mempool
+		if(row != null) {
+			row.deleteRow();
+		}
 		
 		//And the children..
 		mChildrenOfParents.remove(txpid);
@@ -173,20 +192,17 @@ public class FastJavaDB implements TxPowDB {
 		//Switch to the new table..
 		mTxPoWRows = newtable;
 		
+		//And out of the mempool
+		for(TxPOWDBRow row : removed) {
+			row.deleteRow();
+		}
+		
 		return removed;
 	}
 
 	@Override
 	public ArrayList<TxPOWDBRow> getAllUnusedTxPOW() {
-		ArrayList<TxPOWDBRow> ret = new ArrayList<>();
-		Enumeration<JavaDBRow> allrows = mTxPoWRows.elements();
-		while(allrows.hasMoreElements()) {
-			JavaDBRow row = allrows.nextElement();	
-			if(!row.isInBlock()) {
-				ret.add(row);
-			}
-		}
-		return ret;
+		return mMemPool.getAllRows();
 	}
 
 	@Override
@@ -235,6 +251,12 @@ public class FastJavaDB implements TxPowDB {
 
 	@Override
 	public void ClearDB() {
+		Enumeration<JavaDBRow> allrows = mTxPoWRows.elements();
+		while(allrows.hasMoreElements()) {
+			allrows.nextElement().mMemPool = null;
+		}
+		
 		mTxPoWRows.clear();
+		mMemPool.clear();
 	}
 }
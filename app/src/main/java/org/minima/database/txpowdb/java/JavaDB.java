@@ -2,6 +2,7 @@ package org.minima.database.txpowdb.java;
 
 import java.util.ArrayList;
 
+import org.minima.database.txpowdb.MemPool;
 import org.minima.database.txpowdb.TxPOWDBRow;
 import org.minima.database.txpowdb.TxPowDB;
 import org.minima.objects.TxPoW;
@@ -13,9 +14,13 @@ public class JavaDB implements TxPowDB{
 	private ArrayList<JavaDBRow> mRows;
 	private ArrayList<JavaDBRow> mDeletedRows;
 	
+	//All the rows not in a block
+	private MemPool mMemPool;
+	
 	public JavaDB() {
 		mRows = new ArrayList<>();
 		mDeletedRows = new ArrayList<>();
+		mMemPool = new MemPool();
 	}
 
 	@Override
@@ -32,6 +37,10 @@ public class JavaDB implements TxPowDB{
 		//Add it
 		mRows.add(row);
 		
+		//Not in a block yet..
+		row.mMemPool = mMemPool;
+		mMemPool.add(row);
+		
 		return row;
 	}
 
@@ -136,6 +145,11 @@ public class JavaDB implements TxPowDB{
 		return ret;
 	}
 
+	@Override
+	public MemPool getMemPool() {
+		return mMemPool;
+	}
+	
 	@Override
 	public int getSize() {
 		return mRows.size()+ mDeletedRows.size();
@@ -221,8 +235,13 @@ public class JavaDB implements TxPowDB{
 
 	@Override
 	public void ClearDB() {
+		for(JavaDBRow row : mRows) {
+			row.mMemPool = null;
+		}
+		
 		mRows = new ArrayList<>();
 		mDeletedRows = new ArrayList<>();
+		mMemPool.clear();
 	}
 
 	
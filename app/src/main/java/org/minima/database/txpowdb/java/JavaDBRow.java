@@ -1,5 +1,6 @@
 package org.minima.database.txpowdb.java;
 
+import org.minima.database.txpowdb.MemPool;
 import org.minima.database.txpowdb.TxPOWDBRow;
 import org.minima.objects.TxPoW;
 import org.minima.objects.base.MiniNumber;
@@ -23,6 +24,12 @@ public class JavaDBRow implements TxPOWDBRow {
 	
 	private boolean mMonotonic;
 	
+	/**
+	 * The mempool of the DB this is in - kept up to date when this goes in or out of a block.
+	 * Null once the row is deleted.
+	 */
+	MemPool mMemPool = null;
+	
 	public JavaDBRow(TxPoW zTxPOW) {
 		mTxPOW 				= zTxPOW;
 		mIsInBlock 			= false;
@@ -56,7 +63,17 @@ public class JavaDBRow implements TxPOWDBRow {
 
 	@Override
 	public void setIsInBlock(boolean zIsInBlock) {
+		boolean changed = (mIsInBlock != zIsInBlock);
 		mIsInBlock = zIsInBlock;
+		
+		//Keep the mempool up to date
+		if(changed && mMemPool != null) {
+			if(zIsInBlock) {
+				mMemPool.remove(mTxPOW.getTxPowID());
+			}else {
+				mMemPool.add(this);
+			}
+		}
 	}
 	
 	@Override
@@ -115,6 +132,12 @@ public class JavaDBRow implements TxPOWDBRow {
 		if(mDeleteTime == 0) {
 			mDeleteTime = System.currentTimeMillis();
 		}
+		
+		//Out of the mempool for good
+		if(mMemPool != null) {
+			mMemPool.remove(mTxPOW.getTxPowID());
+			mMemPool = null;
+		}
 	}
 
 	@Override
@@ -3,6 +3,7 @@ package org.minima.database.txpowtree;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Hashtable;
@@ -51,6 +52,11 @@ public class BlockTree {
 	 */
 	private ArrayList<BlockTreeNode> mValidBlockList;
 	
+	/**
+	 * The nodes that need their state checked - new blocks and newly filled blocks
+	 */
+	private NodeStack mCheckNodes;
+	
 	/**
 	 * Main Constructor
 	 */
@@ -123,6 +129,9 @@ public class BlockTree {
 		//Add to the fast list
 		addFastLinkNode(zNode);
 		
+		//Needs checking
+		mCheckNodes.push(zNode);
+		
 		//It's been added
 		return true;
 	}
@@ -165,7 +174,8 @@ public class BlockTree {
 	}
 	
 	/**
-	 * Resets the weights in the tree
+	 * Resets the weights in the tree - walks the whole tree. Only needed when the 
+	 * tree is rebuilt. New valid blocks update the weights incrementally.
 	 */
 	public void resetWeights() {
 		//First default them
@@ -236,6 +246,72 @@ public class BlockTree {
 		}
 	}
 	
+	/**
+	 * A node has just become VALID - add its weight to all its parents and 
+	 * re-evaluate the tip from where its branch meets the current chain.
+	 * 
+	 * Children are only checked once the parent is VALID so the node has no 
+	 * valid children yet and its total weight is just its own weight. 
+	 */
+	private void _addValidNode(BlockTreeNode zNode) {
+		//Set the state..
+		zNode.setState(BlockTreeNode.BLOCKSTATE_VALID);
+		
+		//Start fresh - no valid children
+		zNode.resetCurrentWeight();
+		
+		//Add the weight all the way back to the root..
+		BigInteger weight    = zNode.getWeight();
+		BlockTreeNode parent = zNode.getParent();
+		while(parent != null) {
+			parent.addToTotalWeight(weight);
+			parent = parent.getParent();
+		}
+		
+		//No tip yet.. do it the long way
+		if(mTip == null) {
+			mTip = _getHeaviestBranchTip();
+			return;
+		}
+		
+		//Only the branches below the crossover with the current tip have changed..
+		BlockTreeNode crossover = getCrossover(zNode, mTip);
+		if(crossover == null || crossover.getBlockNumber().isLess(getCascadeNode().getBlockNumber())) {
+			crossover = getCascadeNode();
+		}
+		
+		//And get the tip..
+		mTip = _getHeaviestBranchTip(crossover);
+	}
+	
+	/**
+	 * Find the last common node of 2 branches by walking back on block number
+	 */
+	public BlockTreeNode getCrossover(BlockTreeNode zLeft, BlockTreeNode zRight) {
+		BlockTreeNode left  = zLeft;
+		BlockTreeNode right = zRight;
+		
+		while(left != null && right != null) {
+			if(left == right) {
+				return left;
+			}
+			
+			//Move the higher one back.. or both if level
+			MiniNumber leftblock  = left.getBlockNumber();
+			MiniNumber rightblock = right.getBlockNumber();
+			if(leftblock.isMore(rightblock)) {
+				left = left.getParent();
+			}else if(rightblock.isMore(leftblock)) {
+				right = right.getParent();
+			}else {
+				left  = left.getParent();
+				right = right.getParent();
+			}
+		}
+		
+		return null;
+	}
+	
 	/**
 	 * Pick the GHOST heaviest Branch of the tree
 	 * @param zStartNode
@@ -243,7 +319,11 @@ public class BlockTree {
 	 */
 	private BlockTreeNode _getHeaviestBranchTip() {
 		//Hmm.. Should start at cascade node.. MUST be past that node anyway..
-		BlockTreeNode curr = getCascadeNode();
+		return _getHeaviestBranchTip(getCascadeNode());
+	}
+	
+	private BlockTreeNode _getHeaviestBranchTip(BlockTreeNode zStartNode) {
+		BlockTreeNode curr = zStartNode;
 		
 		//If null return null
 		while(curr != null ) {
@@ -323,45 +403,108 @@ public class BlockTree {
 		return null;
 	}
 	
+	/**
+	 * How many blocks are used for the median time
+	 */
+	private static final int MEDIAN_TIME_BLOCKS 		= 72;
+	private static final MiniNumber MEDIAN_TIME_DEPTH 	= new MiniNumber(MEDIAN_TIME_BLOCKS);
+	
 	/**
 	 * Find the media time of the last N blocks..
 	 */
-	private MiniNumber getMedianTime(BlockTreeNode zNode, int zLastBlocks) {
-		//get the current..
-		BlockTreeNode current = zNode;
+	private MiniNumber getMedianTime(BlockTreeNode zNode) {
+		MiniNumber[] sorted = zNode.getSortedTimes();
+		if(sorted == null) {
+			_setRecentTimes(zNode);
+			sorted = zNode.getSortedTimes();
+		}
 		
-		//First make an array of all the numbers..
-		ArrayList<MiniNumber> timelist = new ArrayList<>();
+		//Same as sorting high to low and taking the middle one 
+		int len = sorted.length;
+		return sorted[len - 1 - (len / 2)];
+	}
+	
+	/**
+	 * Work out the recent block times for this node. Moves the parents times on 
+	 * by one block if it can - the chain past the cascade does not change. 
+	 */
+	private void _setRecentTimes(BlockTreeNode zNode) {
+		MiniNumber time 		= zNode.getTxPow().getTimeSecs();
+		BlockTreeNode parent 	= zNode.getParent();
 		
-		int check =0;
-		while(check++ < zLastBlocks) {
-			timelist.add(current.getTxPow().getTimeSecs());
+		if(parent != null && parent.getSortedTimes() != null 
+				&& parent.getBlockNumber().sub(getCascadeNode().getBlockNumber()).isMore(MEDIAN_TIME_DEPTH)) {
+			MiniNumber[] precent = parent.getRecentTimes();
+			MiniNumber[] psorted = parent.getSortedTimes();
 			
-			current = current.getParent();
-			if(current == null) {
-				break;
+			//Add this one and drop the oldest if full
+			int len = Math.min(precent.length + 1, MEDIAN_TIME_BLOCKS);
+			MiniNumber[] recent = new MiniNumber[len];
+			recent[0] = time;
+			System.arraycopy(precent, 0, recent, 1, len - 1);
+			
+			MiniNumber leaving = null;
+			if(precent.length == MEDIAN_TIME_BLOCKS) {
+				leaving = precent[MEDIAN_TIME_BLOCKS - 1];
 			}
-		}
-		
-		//Now sort them..
-		Collections.sort(timelist, new Comparator<MiniNumber>() {
-			@Override
-			public int compare(MiniNumber o1, MiniNumber o2) {
-				if(o1.isLess(o2)) {
-					return 1;
-				}else if(o2.isLess(o1)) {
-					return -1;
+			
+			//Merge into the sorted list..
+			MiniNumber[] sorted = new MiniNumber[len];
+			boolean added 		= false;
+			int pos = 0;
+			for(MiniNumber ptime : psorted) {
+				if(leaving != null && ptime.isEqual(leaving)) {
+					leaving = null;
+					continue;
+				}
+				
+				if(!added && time.isLessEqual(ptime)) {
+					sorted[pos++] = time;
+					added = true;
 				}
-				return 0;
+				sorted[pos++] = ptime;
 			}
-		});
+			if(!added) {
+				sorted[pos] = time;
+			}
+			
+			zNode.setRecentTimes(recent, sorted);
+			return;
+		}
+		
+		//The long way..
+		ArrayList<MiniNumber> timelist = new ArrayList<>();
+		BlockTreeNode current = zNode;
+		while(current != null && timelist.size() < MEDIAN_TIME_BLOCKS) {
+			timelist.add(current.getTxPow().getTimeSecs());
+			current = current.getParent();
+		}
+		
+		MiniNumber[] recent = timelist.toArray(new MiniNumber[0]);
+		MiniNumber[] sorted = recent.clone();
+		Arrays.sort(sorted);
 		
-		return timelist.get(check / 2);
+		zNode.setRecentTimes(recent, sorted);
 	}
 	
+	/**
+	 * A block in the tree has received all its transactions - check it next time
+	 * 
+	 * @param zNode
+	 */
+	public void addCheckNode(BlockTreeNode zNode) {
+		if(zNode != null) {
+			mCheckNodes.push(zNode);
+		}
+	}
 	
 	/**
 	 * Sort the Block tree nodes.. ONLY Full blocks with valid parents get checked
+	 * 
+	 * Only the nodes on the check list are visited. When a node is decided its
+	 * children are checked too - so a block waiting on its parent is picked up
+	 * as soon as the parent is VALID, and INVALID spreads down the branch.  
+	 * 
 	 * @param zMainDB
 	 */
 	public void sortBlockTreeNodeStates(MinimaDB zMainDB) {
@@ -413,7 +556,7 @@ public class BlockTree {
 							}
 							
 							//Check that the TIME is within acceptable parameters - 30 minutes each way
-							MiniNumber mediantime = getMedianTime(zNode, 72);
+							MiniNumber mediantime = getMedianTime(zNode);
 							MiniNumber nodetime   = zNode.getTxPow().getTimeMilli();
 							MiniNumber timefuture = new MiniNumber(System.currentTimeMillis()).add(new MiniNumber(30 * 60 * 1000));   
 							if(nodetime.isLess(mediantime) || nodetime.isMore(timefuture)) {
@@ -495,8 +638,8 @@ public class BlockTree {
 							
 							//if it all passes is OK.. otherwise not ok..
 							if(allok) {
-								//it's all valid!
-								zNode.setState(BlockTreeNode.BLOCKSTATE_VALID);
+								//it's all valid! - weights and tip updated from here
+								_addValidNode(zNode);
 							}else{
 								//No good..
 								zNode.setState(BlockTreeNode.BLOCKSTATE_INVALID);
@@ -507,7 +650,26 @@ public class BlockTree {
 			}
 		}; 
 		
-		_recurseTree(nodestates);
+		//Work through the list..
+		while(!mCheckNodes.isEmpty()) {
+			BlockTreeNode node = mCheckNodes.pop();
+			
+			//Already decided..
+			if(node.getState() != BlockTreeNode.BLOCKSTATE_BASIC) {
+				continue;
+			}
+			
+			//Check it..
+			nodestates.runAction(node);
+			
+			//If decided the children can now be checked
+			if(node.getState() != BlockTreeNode.BLOCKSTATE_BASIC) {
+				ArrayList<BlockTreeNode> children = node.getChildren();
+				for(BlockTreeNode child : children) {
+					mCheckNodes.push(child);
+				}
+			}
+		}
 	}
 	
 	/**
@@ -660,6 +822,9 @@ public class BlockTree {
 			
 			//Clear the MMRset
 			clearnode.setMMRset(null);
+			
+			//Can't be undone now
+			clearnode.setJournal(null);
 		
 			//Get the Parent
 			clearnode = clearnode.getParent();
@@ -701,7 +866,7 @@ public class BlockTree {
 	
 	public MiniNumber getChainSpeed(BlockTreeNode zStartPoint) {
 		//Use a previous block.. 
-		BlockTreeNode starter = getPastBlock(zStartPoint, GlobalParams.MINIMA_BLOCKS_SPEED_CALC.getAsInt());
+		BlockTreeNode starter = _getSpeedStart(zStartPoint);
 		
 		//Calculate to seconds..
 		MiniNumber start      = starter.getTxPow().getTimeSecs();
@@ -735,9 +900,19 @@ public class BlockTree {
 		int numberofblocks=0;
 		
 		//Cycle back from the tip..
-		BlockTreeNode starter   = getPastBlock(zStartPoint, GlobalParams.MINIMA_BLOCKS_SPEED_CALC.getAsInt());
+		BlockTreeNode starter   = _getSpeedStart(zStartPoint);
 		MiniNumber minblock     = starter.getTxPow().getBlockNumber();
 		BlockTreeNode current 	= zStartPoint;
+		
+		//A full window past the cascade - use the running totals
+		if(zStartPoint.getSpeedStart() == starter && minblock.isMore(mCascadeNode.getBlockNumber())) {
+			totaldifficulty = _getChainDifficulty(zStartPoint).subtract(_getChainDifficulty(starter))
+								.add(starter.getTxPow().getBlockDifficulty().getDataValue());
+			
+			BigInteger blocks = BigInteger.valueOf(zStartPoint.getBlockNumber().sub(minblock).getAsLong() + 1);
+			
+			return totaldifficulty.divide(blocks);
+		}
 				
 		while(current!=null && current.getBlockNumber().isMoreEqual(minblock)) {
 			//Add to the total
@@ -754,11 +929,78 @@ public class BlockTree {
 		return avg;
 	}
 
+	/**
+	 * The block a full speed window back - same as getPastBlock(). Moves the parents 
+	 * start on by one block if it can so is only worked out the long way at a fork.
+	 */
+	private BlockTreeNode _getSpeedStart(BlockTreeNode zNode) {
+		MiniNumber cascnumber = mCascadeNode.getBlockNumber();
+		
+		//Already worked out.. and still past the cascade
+		BlockTreeNode starter = zNode.getSpeedStart();
+		if(starter != null && starter.getBlockNumber().isMore(cascnumber)) {
+			return starter;
+		}
+		
+		//Can we move the parents start on by one
+		starter = null;
+		BlockTreeNode parent = zNode.getParent();
+		if(parent != null) {
+			BlockTreeNode pstart = parent.getSpeedStart();
+			if(pstart != null && pstart.getBlockNumber().isMore(cascnumber) && pstart.getNumberChildren() == 1) {
+				starter = pstart.getChild(0);
+			}
+		}
+		
+		//The long way..
+		if(starter == null) {
+			starter = getPastBlock(zNode, GlobalParams.MINIMA_BLOCKS_SPEED_CALC.getAsInt());
+		}
+		
+		//Only keep full windows
+		if(zNode.getBlockNumber().sub(starter.getBlockNumber()).isEqual(GlobalParams.MINIMA_BLOCKS_SPEED_CALC)) {
+			zNode.setSpeedStart(starter);
+		}
+		
+		return starter;
+	}
+	
+	/**
+	 * The total difficulty of the chain up to this node - filled in from the nearest parent that has it
+	 */
+	private BigInteger _getChainDifficulty(BlockTreeNode zNode) {
+		if(zNode.getChainDifficulty() != null) {
+			return zNode.getChainDifficulty();
+		}
+		
+		//Find the nearest parent that has it..
+		ArrayList<BlockTreeNode> fill = new ArrayList<>();
+		BlockTreeNode current = zNode;
+		while(current != null && current.getChainDifficulty() == null) {
+			fill.add(current);
+			current = current.getParent();
+		}
+		
+		//And fill in from there..
+		BigInteger total = BigInteger.ZERO;
+		if(current != null) {
+			total = current.getChainDifficulty();
+		}
+		for(int i=fill.size()-1;i>=0;i--) {
+			BlockTreeNode node = fill.get(i);
+			total = total.add(node.getTxPow().getBlockDifficulty().getDataValue());
+			node.setChainDifficulty(total);
+		}
+		
+		return total;
+	}
+	
 	public void clearTree() {
 		mRoot 			= null;
 		mTip 			= null;
 		mCascadeNode 	= null;
 		mFastLink       = new Hashtable<>();
+		mCheckNodes     = new NodeStack();
 	}
 
 	public static TxPoW createRandomTxPow() {
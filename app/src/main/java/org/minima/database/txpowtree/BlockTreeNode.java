@@ -6,6 +6,7 @@ import java.math.MathContext;
 import java.util.ArrayList;
 import java.util.Collections;
 
+import org.minima.database.BlockJournal;
 import org.minima.database.mmr.MMRSet;
 import org.minima.objects.TxPoW;
 import org.minima.objects.base.MiniData;
@@ -57,6 +58,22 @@ public class BlockTreeNode implements Comparable<BlockTreeNode> {
 	 */
 	MMRSet mMMRSet = new MMRSet();
 	
+	/**
+	 * Rolling chain statistics - worked out from the parent when first needed.
+	 * 
+	 * The recent block times (newest first) and the same times sorted for the median,
+	 * the block at the start of the speed window and the total difficulty of the chain.
+	 */
+	private MiniNumber[] 	mRecentTimes		= null;
+	private MiniNumber[] 	mSortedTimes		= null;
+	private BlockTreeNode	mSpeedStart			= null;
+	private BigInteger		mChainDifficulty	= null;
+	
+	/**
+	 * What this block changed in the databases when it joined the main chain - so it can be undone
+	 */
+	private BlockJournal mJournal = null;
+	
 	/**
 	 * When loading from bloc ctore just use the TxpowID
 	 */
@@ -164,6 +181,43 @@ public class BlockTreeNode implements Comparable<BlockTreeNode> {
 		return mTotalWeight;
 	}
 	
+	public void setRecentTimes(MiniNumber[] zRecent, MiniNumber[] zSorted) {
+		mRecentTimes = zRecent;
+		mSortedTimes = zSorted;
+	}
+	
+	public MiniNumber[] getRecentTimes() {
+		return mRecentTimes;
+	}
+	
+	public MiniNumber[] getSortedTimes() {
+		return mSortedTimes;
+	}
+	
+	public void setSpeedStart(BlockTreeNode zNode) {
+		mSpeedStart = zNode;
+	}
+	
+	public BlockTreeNode getSpeedStart() {
+		return mSpeedStart;
+	}
+	
+	public void setChainDifficulty(BigInteger zTotal) {
+		mChainDifficulty = zTotal;
+	}
+	
+	public BigInteger getChainDifficulty() {
+		return mChainDifficulty;
+	}
+	
+	public void setJournal(BlockJournal zJournal) {
+		mJournal = zJournal;
+	}
+	
+	public BlockJournal getJournal() {
+		return mJournal;
+	}
+	
 	public TxPoW getTxPow() {
 		return mTXPOW;
 	}
@@ -3,6 +3,7 @@
  */
 package org.minima.objects;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
@@ -16,6 +17,7 @@ import org.minima.objects.base.MiniInteger;
 import org.minima.objects.base.MiniNumber;
 import org.minima.system.txpow.TxPoWMiner;
 import org.minima.utils.Crypto;
+import org.minima.utils.MinimaLogger;
 import org.minima.utils.Streamable;
 import org.minima.utils.SuperBlockLevels;
 import org.minima.utils.json.JSONObject;
@@ -53,6 +55,29 @@ public class TxPoW implements Streamable {
 	protected int     _mSuperBlock  = 0;
 	protected long     _mTxPoWSize  = 0;
 	
+	/**
+	 * Once the TxPoWID has been calculated the TxPoW is SEALED and the complete 
+	 * serialized form is kept. Relaying to peers, backing up and hashing the body
+	 * all use this instead of re-encoding the whole structure every time.
+	 * 
+	 * Any change to the TxPoW via the setters unseals it.
+	 */
+	private byte[]   _mSealedData     = null;
+	private int      _mSealedBodyPos  = 0;
+	private MiniData _mSealedBodyHash = null;
+	
+	/**
+	 * When read from a complete serialized TxPoW the body is left as raw bytes in the 
+	 * sealed data and only decoded the first time it is needed. Duplicates and header 
+	 * only uses never pay for decoding the transactions, witness and proofs.
+	 */
+	private volatile boolean _mLazyBody = false;
+	
+	/**
+	 * The lazy body could not be decoded - the TxPoW is invalid
+	 */
+	private volatile boolean _mInvalidBody = false;
+	
 	/**
 	 * Main Constructor
 	 */
@@ -70,22 +95,69 @@ public class TxPoW implements Streamable {
 	}
 	
 	public void setHeaderBodyHash() {
-		mHeader.mTxBodyHash = Crypto.getInstance().hashObject(mBody);
+		mHeader.mTxBodyHash = getCalculatedBodyHash();
+		unseal();
+	}
+	
+	/**
+	 * The actual hash of the TxBody - uses the sealed data if available
+	 */
+	public MiniData getCalculatedBodyHash() {
+		if(!hasBody()) {
+			return null;
+		}
+		
+		//Have we sealed it.. 
+		if(isSealed()) {
+			if(_mSealedBodyHash == null) {
+				int bodylen      = _mSealedData.length - _mSealedBodyPos;
+				_mSealedBodyHash = new MiniData(Crypto.getInstance().hashData(_mSealedData, _mSealedBodyPos, bodylen, 512));
+			}
+			return _mSealedBodyHash;
+		}
+		
+		return Crypto.getInstance().hashObject(mBody);
 	}
 	
 	public TxBody getTxBody() {
+		decodeBody();
 		return mBody;	
 	}
 	
 	public boolean hasBody() {
-		return mBody != null;
+		return _mLazyBody || mBody != null;
+	}
+	
+	/**
+	 * Could the body be decoded - checkers must reject the TxPoW if not
+	 */
+	public boolean isBodyValid() {
+		decodeBody();
+		return !_mInvalidBody;
+	}
+	
+	/**
+	 * A new TxPoW with just this header - this one is not changed
+	 */
+	public TxPoW getHeaderOnly() throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		DataOutputStream dos = new DataOutputStream(baos);
+		mHeader.writeDataStream(dos);
+		MiniByte.FALSE.writeDataStream(dos);
+		dos.flush();
+		
+		return ReadLazyFromData(baos.toByteArray());
 	}
 	
 	public void clearBody() {
+		//No need to decode it..
+		_mLazyBody = false;
+		unseal();
 		mBody = null;
 	}
 	
 	public void setNonce(MiniInteger zNonce) {
+		unseal();
 		mHeader.mNonce = zNonce;
 	}
 	
@@ -94,10 +166,12 @@ public class TxPoW implements Streamable {
 	}
 	
 	public void setChainID(MiniData zChainID) {
+		unseal();
 		mHeader.mChainID = zChainID;
 	}
 	
 	public void setParentChainID(MiniData zChainID) {
+		unseal();
 		mHeader.mParentChainID = zChainID;
 	}
 	
@@ -110,38 +184,47 @@ public class TxPoW implements Streamable {
 	}
 		
 	public void setTxDifficulty(MiniData zDifficulty) {
+		unseal();
 		mBody.mTxnDifficulty = zDifficulty;
 	}
 	
 	public MiniData getTxnDifficulty() {
+		decodeBody();
 		return mBody.mTxnDifficulty;
 	}
 	
 	public Transaction getTransaction() {
+		decodeBody();
 		return mBody.mTransaction;
 	}
 	
 	public Transaction getBurnTransaction() {
+		decodeBody();
 		return mBody.mBurnTransaction;
 	}
 	
 	public void setTransaction(Transaction zTran) {
+		unseal();
 		mBody.mTransaction = zTran;
 	}
 	
 	public void setWitness(Witness zWitness) {
+		unseal();
 		mBody.mWitness = zWitness;
 	}
 	
 	public Witness getWitness() {
+		decodeBody();
 		return mBody.mWitness;
 	}
 	
 	public Witness getBurnWitness() {
+		decodeBody();
 		return mBody.mBurnWitness;
 	}
 	
 	public void addBlockTxPOW(TxPoW zTxPOW) {
+		unseal();
 		mBody.mTxPowIDList.add(zTxPOW.getTxPowID());
 	}
 	
@@ -151,6 +234,7 @@ public class TxPoW implements Streamable {
 			return new ArrayList<MiniData>();	
 		}
 		
+		decodeBody();
 		return mBody.mTxPowIDList;
 	}
 	
@@ -159,6 +243,7 @@ public class TxPoW implements Streamable {
 	}
 	
 	public void setBlockDifficulty(MiniData zBlockDifficulty) {
+		unseal();
 		mHeader.mBlockDifficulty = zBlockDifficulty;
 	}
 	
@@ -167,6 +252,7 @@ public class TxPoW implements Streamable {
 	}
 
 	public void setSuperParent(int zLevel, MiniData zSuperParent) {
+		unseal();
 		mHeader.mSuperParents[zLevel] = zSuperParent;
 	}
 	
@@ -175,6 +261,7 @@ public class TxPoW implements Streamable {
 	}
 	
 	public void setTimeSecs(MiniNumber zSecs) {
+		unseal();
 		mHeader.mTimeSecs = zSecs;
 	}
 	
@@ -183,6 +270,7 @@ public class TxPoW implements Streamable {
 	}
 	
 	public void setTimeMilli(MiniNumber zMilli) {
+		unseal();
 		mHeader.mTimeSecs = zMilli.divRoundDown(MiniNumber.THOUSAND);
 	}
 	
@@ -191,6 +279,7 @@ public class TxPoW implements Streamable {
 	}
 	
 	public void setBlockNumber(MiniNumber zBlockNum) {
+		unseal();
 		mHeader.mBlockNumber = zBlockNum;
 	}
 	
@@ -199,6 +288,7 @@ public class TxPoW implements Streamable {
 	}
 	
 	public MiniData getMagic() {
+		decodeBody();
 		return mBody.mMagic.mPRNG;
 	}
 	
@@ -207,6 +297,7 @@ public class TxPoW implements Streamable {
 	}
 	
 	public void setMMRRoot(MiniData zRoot) {
+		unseal();
 		mHeader.mMMRRoot = zRoot;
 	}
 	
@@ -215,6 +306,7 @@ public class TxPoW implements Streamable {
 	}
 	
 	public void setMMRTotal(MMRSumNumber zTotal) {
+		unseal();
 		mHeader.mMMRTotal= zTotal;
 	}
 	
@@ -222,8 +314,8 @@ public class TxPoW implements Streamable {
 		JSONObject txpow = new JSONObject();
 		
 		txpow.put("txpowid", _mTxPOWID.toString());
-		txpow.put("isblock", _mIsBlockPOW);
-		txpow.put("istransaction", _mIsTxnPOW);
+		txpow.put("isblock", isBlock());
+		txpow.put("istransaction", isTransaction());
 		txpow.put("superblock", _mSuperBlock);
 		txpow.put("size", getSizeinBytes());
 		
@@ -231,6 +323,7 @@ public class TxPoW implements Streamable {
 		
 		txpow.put("hasbody", hasBody());
 		if(hasBody()) {
+			decodeBody();
 			txpow.put("body", mBody.toJSON());	
 		}else {
 			txpow.put("body", "null");
@@ -246,6 +339,12 @@ public class TxPoW implements Streamable {
 	
 	@Override
 	public void writeDataStream(DataOutputStream zOut) throws IOException {
+		//Already serialized..
+		if(isSealed()) {
+			zOut.write(_mSealedData);
+			return;
+		}
+		
 		//There is always the Header
 		mHeader.writeDataStream(zOut);
 		
@@ -260,9 +359,14 @@ public class TxPoW implements Streamable {
 
 	@Override
 	public void readDataStream(DataInputStream zIn) throws IOException {
+		unseal();
+		
 		mHeader.readDataStream(zIn);
 		
 		if(MiniByte.ReadFromStream(zIn).isTrue()) {
+			if(mBody == null) {
+				mBody = new TxBody();
+			}
 			mBody.readDataStream(zIn);
 		}else {
 			mBody = null;
@@ -282,6 +386,7 @@ public class TxPoW implements Streamable {
 	}
 	
 	public MiniData getTransID() {
+		decodeBody();
 		return _mTransID;
 	}
 	
@@ -294,6 +399,7 @@ public class TxPoW implements Streamable {
 	}
 	
 	public boolean isTransaction() {
+		decodeBody();
 		return _mIsTxnPOW;
 	}
 	
@@ -301,52 +407,207 @@ public class TxPoW implements Streamable {
 		return _mTxPoWSize;
 	}
 	
+	public boolean isSealed() {
+		return _mSealedData != null;
+	}
+	
+	/**
+	 * The TxPoW has been changed - the cached data is no longer valid 
+	 */
+	private void unseal() {
+		//Can't lose the body..
+		decodeBody();
+		
+		_mSealedData     = null;
+		_mSealedBodyPos  = 0;
+		_mSealedBodyHash = null;
+	}
+	
 	/**
 	 * This is only done once at creation. TXPOW structures are immutable.
+	 * 
+	 * Serializes the TxPoW ONCE and SEALS it - the ID, size and body hash 
+	 * are all taken from the same data.
 	 */
 	public void calculateTXPOWID() {
+		//Serialize the whole TxPoW..
+		int headerlen = 0;
+		try {
+			unseal();
+			
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			DataOutputStream dos       = new DataOutputStream(baos);
+			
+			//The Header..
+			mHeader.writeDataStream(dos);
+			headerlen = dos.size();
+			
+			//Is there a body..
+			if(mBody==null) {
+				MiniByte.FALSE.writeDataStream(dos);
+			}else {
+				MiniByte.TRUE.writeDataStream(dos);
+				mBody.writeDataStream(dos);
+			}
+			dos.flush();
+			
+			//Keep it..
+			_mSealedData    = baos.toByteArray();
+			_mSealedBodyPos = headerlen + 1;
+			
+			dos.close();
+			baos.close();
+			
+		} catch (IOException e) {
+			e.printStackTrace();
+			unseal();
+		}
+		
 		//The TXPOW ID
-		_mTxPOWID = Crypto.getInstance().hashObject(mHeader);
+		if(isSealed()) {
+			_mTxPOWID = new MiniData(Crypto.getInstance().hashData(_mSealedData, 0, headerlen, 512));
+		}else {
+			_mTxPOWID = Crypto.getInstance().hashObject(mHeader);
+		}
+		
+		//Block and Super Level
+		calculateHeaderValues();
 		
+		//The Transaction ID
+		calculateTransactionValues();
+	
+		//What size are we..
+		if(isSealed()) {
+			_mTxPoWSize = _mSealedData.length;
+		}
+	}
+	
+	/**
+	 * Only needs the TxPoWID and the header
+	 */
+	private void calculateHeaderValues() {
 		//Valid Block
 		_mIsBlockPOW = _mTxPOWID.isLess(getBlockDifficulty());
 		
-		//The Transaction ID
+		//What Super Level are we..
+		_mSuperBlock = SuperBlockLevels.getSuperLevel(getBlockDifficulty(), _mTxPOWID);
+	}
+	
+	/**
+	 * Needs the TxBody
+	 */
+	private void calculateTransactionValues() {
 		_mIsTxnPOW = false;
-		if(hasBody()) {
+		if(mBody != null) {
 			//Whats the Transaction ID
 			_mTransID = Crypto.getInstance().hashObject(mBody.mTransaction);
 		
 			//Valid Transaction
-			if(_mTxPOWID.isLess(getTxnDifficulty()) && !getTransaction().isEmpty()) {
+			if(_mTxPOWID.isLess(mBody.mTxnDifficulty) && !mBody.mTransaction.isEmpty()) {
 				_mIsTxnPOW = true;
 			}
 			
 			//Must be at least the minimum..
-			if(getTxnDifficulty().isMore(TxPoWMiner.BASE_TXN)) {
+			if(mBody.mTxnDifficulty.isMore(TxPoWMiner.BASE_TXN)) {
 				_mIsTxnPOW = false;
 			}
 		}
-		
-		//What Super Level are we..
-		_mSuperBlock = SuperBlockLevels.getSuperLevel(getBlockDifficulty(), _mTxPOWID);
+	}
 	
-		//What size are we..
-		try {
-			ByteArrayOutputStream baos = new ByteArrayOutputStream();
-			DataOutputStream dos       = new DataOutputStream(baos);
-			writeDataStream(dos);
-			dos.flush();
-			baos.flush();
+	/**
+	 * Decode the TxBody from the sealed data if it has not been done yet
+	 */
+	private void decodeBody() {
+		if(!_mLazyBody) {
+			return;
+		}
+		
+		synchronized (this) {
+			//Check again.. inside the lock
+			if(!_mLazyBody) {
+				return;
+			}
 			
-			//Get the Size
-			_mTxPoWSize = baos.toByteArray().length;
+			try {
+				ByteArrayInputStream bais = new ByteArrayInputStream(_mSealedData, _mSealedBodyPos, _mSealedData.length - _mSealedBodyPos);
+				DataInputStream dis       = new DataInputStream(bais);
+				
+				TxBody body = new TxBody();
+				body.readDataStream(dis);
+				
+				dis.close();
+				bais.close();
+				
+				mBody = body;
+				
+			} catch (IOException e) {
+				//The hash matched but the data is rubbish.. an empty body so nothing breaks - but it is INVALID
+				MinimaLogger.log("ERROR decoding TxBody "+_mTxPOWID+" "+e);
+				mBody 		  = new TxBody();
+				_mInvalidBody = true;
+			}
 			
-			dos.close();
-			baos.close();
+			//Now the transaction details
+			calculateTransactionValues();
 			
-		} catch (IOException e) {
-			e.printStackTrace();
+			//It's done
+			_mLazyBody = false;
 		}
 	}
+	
+	/**
+	 * Read a TxPoW from its COMPLETE serialized form WITHOUT decoding the body.
+	 * 
+	 * The header is read straight away so the TxPoWID, block, super level and size are 
+	 * available for tree placement and duplicate checks. The TxBody is only decoded the
+	 * first time it is accessed. The data is kept as the sealed form of the TxPoW. 
+	 * 
+	 * zData must hold exactly one TxPoW - eg a TxPoW file or a single TxPoW message.
+	 * 
+	 * @param zData
+	 * @return
+	 * @throws IOException
+	 */
+	public static TxPoW ReadLazyFromData(byte[] zData) throws IOException {
+		TxPoW txpow = new TxPoW();
+		
+		ByteArrayInputStream bais = new ByteArrayInputStream(zData);
+		DataInputStream dis       = new DataInputStream(bais);
+		
+		//Read the header..
+		txpow.mHeader.readDataStream(dis);
+		int headerlen = zData.length - bais.available();
+		
+		//Is there a body..
+		boolean body = MiniByte.ReadFromStream(dis).isTrue();
+		
+		dis.close();
+		bais.close();
+		
+		//Seal it with the data..
+		txpow.mBody            = null;
+		txpow._mSealedData     = zData;
+		txpow._mSealedBodyPos  = headerlen + 1;
+		txpow._mSealedBodyHash = null;
+		
+		if(body) {
+			//Decode when needed - set first so the body hash is taken from the sealed data
+			txpow._mLazyBody = true;
+			
+			//Check the body is the one the header commits to.. cheaper than decoding it
+			if(!txpow.getCalculatedBodyHash().isEqual(txpow.getTxHeaderBodyHash())) {
+				throw new IOException("TxHeader and TxBody Mismatch reading TxPoW");
+			}
+			
+		}else if(txpow._mSealedBodyPos != zData.length) {
+			throw new IOException("Extra data after TxPoW with no body "+(zData.length - txpow._mSealedBodyPos));
+		}
+		
+		//The TxPoWID from the header data
+		txpow._mTxPOWID   = new MiniData(Crypto.getInstance().hashData(zData, 0, headerlen, 512));
+		txpow._mTxPoWSize = zData.length;
+		txpow.calculateHeaderValues();
+		
+		return txpow;
+	}
 }
@@ -10,6 +10,7 @@ import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.security.SecureRandom;
+import java.util.Arrays;
 
 import org.minima.system.network.MinimaReader;
 import org.minima.utils.BaseConverter;
@@ -28,10 +29,18 @@ public class MiniData implements Streamable {
 	protected byte[] mData;
 	
 	/**
-	 * The numeric value of the data
+	 * The numeric value of the data - ONLY created when needed.
+	 * 
+	 * Most MiniData are IDs, addresses and signatures that are only ever checked 
+	 * for equality. Comparisons are done byte-wise on the data.
 	 */
 	protected BigInteger mDataVal;
 	
+	/**
+	 * Cached hash code - 0 if not yet calculated
+	 */
+	private int mHashCode;
+	
 	public MiniData() {
 		this(new byte[0]);
 	}
@@ -42,11 +51,14 @@ public class MiniData implements Streamable {
 	
 	public MiniData(byte[] zData) {
 		mData = zData;
-		setDataValue();
 	}
 	
-	private void setDataValue() {
-		mDataVal = new BigInteger(1,mData);
+	/**
+	 * New data - reset the cached values
+	 */
+	private void resetDataValue() {
+		mDataVal  = null;
+		mHashCode = 0;
 	}
 	
 	public int getLength() {
@@ -58,15 +70,18 @@ public class MiniData implements Streamable {
 	}
 	
 	public BigInteger getDataValue() {
+		if(mDataVal == null) {
+			mDataVal = new BigInteger(1,mData);
+		}
 		return mDataVal;
 	}
 	
 	public BigDecimal getDataValueDecimal() {
-		return new BigDecimal(mDataVal);
+		return new BigDecimal(getDataValue());
 	}
 	
 	public MiniNumber getDataValueMiniNumber() {
-		return new MiniNumber(mDataVal);
+		return new MiniNumber(getDataValue());
 	}
 	
 	@Override
@@ -74,6 +89,16 @@ public class MiniData implements Streamable {
 		return isEqual((MiniData)o);
 	}
 	
+	@Override
+	public int hashCode() {
+		int hash = mHashCode;
+		if(hash == 0) {
+			hash = Arrays.hashCode(mData);
+			mHashCode = hash;
+		}
+		return hash;
+	}
+	
 	public boolean isEqual(MiniData zCompare) {
 		int len = getLength();
 		if(len != zCompare.getLength()) {
@@ -95,31 +120,67 @@ public class MiniData implements Streamable {
 	}
 	
 	public boolean isLess(MiniData zCompare) {
-		return mDataVal.compareTo(zCompare.getDataValue()) < 0;
+		return compare(zCompare) < 0;
 	}
 	
 	public boolean isLessEqual(MiniData zCompare) {
-		return mDataVal.compareTo(zCompare.getDataValue()) <= 0;
+		return compare(zCompare) <= 0;
 	}
 	
 	public boolean isMore(MiniData zCompare) {
-		return mDataVal.compareTo(zCompare.getDataValue()) > 0;
+		return compare(zCompare) > 0;
 	}
 	
 	public boolean isMoreEqual(MiniData zCompare) {
-		return mDataVal.compareTo(zCompare.getDataValue()) >= 0;
+		return compare(zCompare) >= 0;
 	}
 	
 	public MiniData shiftr(int zNumber) {
-		return new MiniData(mDataVal.shiftRight(zNumber).toString(16).toUpperCase());
+		return new MiniData(getDataValue().shiftRight(zNumber).toString(16).toUpperCase());
 	}
 	
 	public MiniData shiftl(int zNumber) {
-		return new MiniData(mDataVal.shiftLeft(zNumber).toString(16).toUpperCase());
+		return new MiniData(getDataValue().shiftLeft(zNumber).toString(16).toUpperCase());
 	}
 	
+	/**
+	 * Compare the unsigned numeric value of the data - byte by byte.
+	 * 
+	 * Same result as comparing the BigIntegers but no allocation. Used for the difficulty checks.
+	 */
 	public int compare(MiniData zCompare) {
-		return mDataVal.compareTo(zCompare.getDataValue());
+		byte[] data  = zCompare.getData();
+		
+		//Skip the leading zeros..
+		int start   = 0;
+		int len     = mData.length;
+		while(start < len && mData[start] == 0) {
+			start++;
+		}
+		
+		int cstart  = 0;
+		int clen    = data.length;
+		while(cstart < clen && data[cstart] == 0) {
+			cstart++;
+		}
+		
+		//Longer is bigger..
+		int size  = len - start;
+		int csize = clen - cstart;
+		if(size != csize) {
+			return size < csize ? -1 : 1;
+		}
+		
+		//Same length - first different byte
+		for(int i=0;i<size;i++) {
+			int b  = mData[start+i] & 0xFF;
+			int cb = data[cstart+i] & 0xFF;
+			if(b != cb) {
+				return b < cb ? -1 : 1;
+			}
+		}
+		
+		return 0;
 	}
 	
 	public MiniData concat(MiniData zConcat) {
@@ -190,8 +251,8 @@ public class MiniData implements Streamable {
 		mData = new byte[len];
 		zIn.readFully(mData);
 		
-		//Set the data value
-		setDataValue();
+		//Reset the data value
+		resetDataValue();
 	}
 	
 	public static MiniData ReadFromStream(DataInputStream zIn) throws IOException{
@@ -234,8 +295,8 @@ public class MiniData implements Streamable {
 		mData = new byte[len];
 		zIn.readFully(mData);
 		
-		//Set the data value
-		setDataValue();
+		//Reset the data value
+		resetDataValue();
 	}
 	
 	public static MiniData ReadHashFromStream(DataInputStream zIn) throws IOException{
@@ -288,5 +349,51 @@ public class MiniData implements Streamable {
 		long timediff = System.currentTimeMillis() - timenow;
 		System.out.println(allsame+" "+timediff);
 		
+		//The byte compare must agree with the BigInteger value - leading zeros and all
+		java.util.Random rand = new java.util.Random(42);
+		int errors = 0;
+		int tests  = 1000000;
+		for(int i=0;i<tests;i++) {
+			MiniData m1 = new MiniData(randomCompareData(rand));
+			MiniData m2 = rand.nextInt(10) == 0 ? new MiniData(m1.getData().clone()) : new MiniData(randomCompareData(rand));
+			
+			BigInteger b1 = new BigInteger(1, m1.getData());
+			BigInteger b2 = new BigInteger(1, m2.getData());
+			int bigcomp   = Integer.signum(b1.compareTo(b2));
+			
+			boolean ok = true;
+			ok &= Integer.signum(m1.compare(m2)) == bigcomp;
+			ok &= m1.isLess(m2) == (bigcomp < 0);
+			ok &= m1.isLessEqual(m2) == (bigcomp <= 0);
+			ok &= m1.isMore(m2) == (bigcomp > 0);
+			ok &= m1.isMoreEqual(m2) == (bigcomp >= 0);
+			ok &= m1.getDataValue().equals(b1);
+			
+			//Equal bytes - equal hash
+			if(m1.isEqual(m2)) {
+				ok &= m1.hashCode() == m2.hashCode();
+			}
+			
+			if(!ok) {
+				errors++;
+				if(errors < 10) {
+					System.out.println("MISMATCH "+m1.to0xString()+" "+m2.to0xString());
+				}
+			}
+		}
+		System.out.println("Compare tests "+tests+" errors "+errors);
+	}
+	
+	/**
+	 * Random length with some leading zeros
+	 */
+	private static byte[] randomCompareData(java.util.Random zRand) {
+		byte[] data = new byte[zRand.nextInt(40)];
+		zRand.nextBytes(data);
+		int zeros = zRand.nextInt(4) == 0 ? zRand.nextInt(data.length + 1) : 0;
+		for(int i=0;i<zeros;i++) {
+			data[i] = 0;
+		}
+		return data;
 	}
 }
@@ -11,41 +11,93 @@ import org.minima.utils.Streamable;
 
 /**
  * NO limit Very Large whole numbers for the MMR Entry..
+ * 
+ * Stored as a long and only promoted to a BigInteger if it does not fit. 
+ * The stream encoding is the same in both cases.
+ * 
  * @author spartacusrex
  *
  */
-public class MiniInteger implements Streamable {
+public class MiniInteger implements Streamable, Comparable<MiniInteger> {
 
 	public static MiniInteger ZERO = new MiniInteger(0);
 	public static MiniInteger ONE  = new MiniInteger(1);
 	public static MiniInteger TWO  = new MiniInteger(2);
-		
-	private BigInteger mNumber;
+	
+	private static final BigInteger LONG_MIN = BigInteger.valueOf(Long.MIN_VALUE);
+	private static final BigInteger LONG_MAX = BigInteger.valueOf(Long.MAX_VALUE);
+	
+	/**
+	 * The value if it fits in a long
+	 */
+	private long mLong;
+	
+	/**
+	 * ONLY set if the value does not fit in a long 
+	 */
+	private BigInteger mBigNumber;
 	
 	private MiniInteger() {}
 	
 	public MiniInteger(String zNumber) {
-		this(new BigInteger(zNumber));
+		try {
+			mLong = Long.parseLong(zNumber);
+		}catch(NumberFormatException exc) {
+			setBigNumber(new BigInteger(zNumber));
+		}
 	}
 	
 	public MiniInteger(BigInteger zNumber) {
-		mNumber = zNumber;
+		setBigNumber(zNumber);
 	}
 	
 	public MiniInteger(int zNumber) {
-		mNumber = new BigInteger(Integer.toString(zNumber));
+		mLong = zNumber;
+	}
+	
+	public MiniInteger(long zNumber) {
+		mLong = zNumber;
+	}
+	
+	private void setBigNumber(BigInteger zNumber) {
+		//Keep as a long if we can..
+		if(zNumber.compareTo(LONG_MIN) >= 0 && zNumber.compareTo(LONG_MAX) <= 0) {
+			mLong      = zNumber.longValue();
+			mBigNumber = null;
+		}else {
+			mBigNumber = zNumber;
+		}
+	}
+	
+	private boolean isLong() {
+		return mBigNumber == null;
 	}
 	
 	public BigInteger getNumber() {
-		return mNumber;
+		if(isLong()) {
+			return BigInteger.valueOf(mLong);
+		}
+		return mBigNumber;
+	}
+	
+	@Override
+	public int compareTo(MiniInteger zNumber) {
+		if(isLong() && zNumber.isLong()) {
+			return Long.compare(mLong, zNumber.mLong);
+		}
+		return getNumber().compareTo(zNumber.getNumber());
 	}
 	
 	public boolean isEqual(MiniInteger zNumber) {
-		return mNumber.compareTo(zNumber.getNumber()) == 0;
+		//Big numbers never fit in a long..
+		if(isLong() && zNumber.isLong()) {
+			return mLong == zNumber.mLong;
+		}
+		return compareTo(zNumber) == 0;
 	}
 	
 	public boolean isLess(MiniInteger zNumber) {
-		return mNumber.compareTo(zNumber.getNumber()) < 0;
+		return compareTo(zNumber) < 0;
 	}
 	
 //	public boolean isLessEqual(MiniInteger zNumber) {
@@ -61,19 +113,51 @@ public class MiniInteger implements Streamable {
 //	}
 	
 	public MiniInteger modulo(MiniInteger zNumber) {
-		return new MiniInteger(mNumber.mod(zNumber.getNumber()));
+		if(isLong() && zNumber.isLong() && zNumber.mLong > 0) {
+			//Same as BigInteger.mod - never negative
+			return new MiniInteger(Math.floorMod(mLong, zNumber.mLong));
+		}
+		return new MiniInteger(getNumber().mod(zNumber.getNumber()));
 	}
 	
 	public MiniInteger add(MiniInteger zNumber) {
-		return new MiniInteger(mNumber.add(zNumber.getNumber()));
+		if(isLong() && zNumber.isLong()) {
+			long a = mLong;
+			long b = zNumber.mLong;
+			long r = a + b;
+			
+			//No overflow..
+			if(((a ^ r) & (b ^ r)) >= 0) {
+				return new MiniInteger(r);
+			}
+		}
+		return new MiniInteger(getNumber().add(zNumber.getNumber()));
 	}
 	
 	public MiniInteger sub(MiniInteger zNumber) {
-		return new MiniInteger(mNumber.subtract(zNumber.getNumber()));
+		if(isLong() && zNumber.isLong()) {
+			long a = mLong;
+			long b = zNumber.mLong;
+			long r = a - b;
+			
+			//No overflow..
+			if(((a ^ b) & (a ^ r)) >= 0) {
+				return new MiniInteger(r);
+			}
+		}
+		return new MiniInteger(getNumber().subtract(zNumber.getNumber()));
 	}
 	
 	public MiniInteger divRoundDown(MiniInteger zNumber) {
-		BigDecimal bigd    = new BigDecimal(mNumber);
+		if(isLong() && zNumber.isLong() && zNumber.mLong != 0) {
+			//Only overflow..
+			if(!(mLong == Long.MIN_VALUE && zNumber.mLong == -1)) {
+				//Java division rounds down towards zero
+				return new MiniInteger(mLong / zNumber.mLong);
+			}
+		}
+		
+		BigDecimal bigd    = new BigDecimal(getNumber());
 		BigDecimal bigddiv = new BigDecimal(zNumber.getNumber());
 		BigDecimal ans     = bigd.divide(bigddiv, RoundingMode.DOWN);
 		
@@ -81,25 +165,55 @@ public class MiniInteger implements Streamable {
 	}
 	
 	public MiniInteger mult(MiniInteger zNumber) {
-		return new MiniInteger(mNumber.multiply(zNumber.getNumber()));
+		if(isLong() && zNumber.isLong()) {
+			long a = mLong;
+			long b = zNumber.mLong;
+			
+			//Both fit in an int - can't overflow
+			if(a == (int)a && b == (int)b) {
+				return new MiniInteger(a * b);
+			}
+		}
+		return new MiniInteger(getNumber().multiply(zNumber.getNumber()));
 	}
 	
 	public MiniInteger increment() {
+		if(isLong() && mLong != Long.MAX_VALUE) {
+			return new MiniInteger(mLong + 1);
+		}
 		return add(ONE);
 	}
 	
 	public MiniInteger decrement() {
+		if(isLong() && mLong != Long.MIN_VALUE) {
+			return new MiniInteger(mLong - 1);
+		}
 		return sub(ONE);
 	}
 	
 	@Override
 	public String toString() {
-		return mNumber.toString();
+		if(isLong()) {
+			return Long.toString(mLong);
+		}
+		return mBigNumber.toString();
 	}
 
 	@Override
 	public void writeDataStream(DataOutputStream zOut) throws IOException {
-		byte[] bytes = mNumber.toByteArray();
+		if(isLong()) {
+			//Same bytes as BigInteger.toByteArray()
+			long val   = mLong;
+			int bitlen = 64 - Long.numberOfLeadingZeros(val < 0 ? ~val : val);
+			int len    = bitlen / 8 + 1;
+			zOut.writeInt(len);
+			for(int i=len-1;i>=0;i--) {
+				zOut.writeByte((int)(val >> (i*8)));
+			}
+			return;
+		}
+		
+		byte[] bytes = mBigNumber.toByteArray();
 		int len      = bytes.length;
 		
 		zOut.writeInt(len);
@@ -118,7 +232,18 @@ public class MiniInteger implements Streamable {
 		byte[] data = new byte[len];
 		zIn.readFully(data);
 		
-		mNumber = new BigInteger(data);
+		//Fits in a long..
+		if(len > 0 && len <= 8) {
+			long val = data[0];
+			for(int i=1;i<len;i++) {
+				val = (val << 8) | (data[i] & 0xFF);
+			}
+			mLong      = val;
+			mBigNumber = null;
+			return;
+		}
+		
+		setBigNumber(new BigInteger(data));
 	}
 	
 	public static MiniInteger ReadFromStream(DataInputStream zIn) throws IOException {
@@ -126,4 +251,85 @@ public class MiniInteger implements Streamable {
 		data.readDataStream(zIn);
 		return data;
 	}
+	
+	/**
+	 * Random values - many near the long boundaries so both paths are used
+	 */
+	private static BigInteger randomBigInteger(java.util.Random zRand) {
+		switch(zRand.nextInt(5)) {
+		case 0 :
+			return BigInteger.valueOf(zRand.nextInt(1000) - 500);
+		case 1 :
+			return BigInteger.valueOf(zRand.nextLong());
+		case 2 :
+			return LONG_MAX.subtract(BigInteger.valueOf(zRand.nextInt(4)));
+		case 3 :
+			return LONG_MIN.add(BigInteger.valueOf(zRand.nextInt(4)));
+		default :
+			return new BigInteger(64 + zRand.nextInt(64), zRand).multiply(BigInteger.valueOf(zRand.nextBoolean() ? 1 : -1));
+		}
+	}
+	
+	private static byte[] getStreamBytes(MiniInteger zNumber) throws IOException {
+		java.io.ByteArrayOutputStream baos = new java.io.ByteArrayOutputStream();
+		DataOutputStream dos = new DataOutputStream(baos);
+		zNumber.writeDataStream(dos);
+		dos.flush();
+		return baos.toByteArray();
+	}
+	
+	/**
+	 * Check the long path gives EXACTLY the same results as BigInteger
+	 */
+	public static void main(String[] zArgs) {
+		java.util.Random rand = new java.util.Random(42);
+		int errors = 0;
+		int tests  = 2000000;
+		try {
+			for(int i=0;i<tests;i++) {
+				BigInteger b1 = randomBigInteger(rand);
+				BigInteger b2 = randomBigInteger(rand);
+				MiniInteger m1 = new MiniInteger(b1);
+				MiniInteger m2 = new MiniInteger(b2);
+				
+				boolean ok = true;
+				ok &= m1.add(m2).getNumber().equals(b1.add(b2));
+				ok &= m1.sub(m2).getNumber().equals(b1.subtract(b2));
+				ok &= m1.mult(m2).getNumber().equals(b1.multiply(b2));
+				ok &= m1.increment().getNumber().equals(b1.add(BigInteger.ONE));
+				ok &= m1.decrement().getNumber().equals(b1.subtract(BigInteger.ONE));
+				ok &= Integer.signum(m1.compareTo(m2)) == b1.compareTo(b2);
+				ok &= m1.isEqual(m2) == b1.equals(b2);
+				ok &= m1.toString().equals(b1.toString());
+				if(b2.signum() > 0) {
+					ok &= m1.modulo(m2).getNumber().equals(b1.mod(b2));
+				}
+				if(b2.signum() != 0) {
+					ok &= m1.divRoundDown(m2).getNumber().equals(b1.divide(b2));
+				}
+				
+				//Stream bytes must be what BigInteger wrote
+				byte[] bytes = b1.toByteArray();
+				java.io.ByteArrayOutputStream baos = new java.io.ByteArrayOutputStream();
+				DataOutputStream dos = new DataOutputStream(baos);
+				dos.writeInt(bytes.length);
+				dos.write(bytes);
+				dos.flush();
+				ok &= java.util.Arrays.equals(baos.toByteArray(), getStreamBytes(m1));
+				
+				MiniInteger read = ReadFromStream(new DataInputStream(new java.io.ByteArrayInputStream(getStreamBytes(m1))));
+				ok &= read.getNumber().equals(b1);
+				
+				if(!ok) {
+					errors++;
+					if(errors < 10) {
+						System.out.println("MISMATCH "+b1+" "+b2);
+					}
+				}
+			}
+		}catch(IOException exc) {
+			exc.printStackTrace();
+		}
+		System.out.println("MiniInteger tests "+tests+" errors "+errors);
+	}
 }
@@ -34,6 +34,26 @@ public class MiniNumber implements Streamable, Comparable<MiniNumber> {
 	 */
 	public static final MathContext mMathContext = new MathContext(18, RoundingMode.DOWN);
 	
+	/**
+	 * Numbers with no more than 18 significant digits are kept as a scaled long - the 
+	 * unscaled value and the scale - exactly like the BigDecimal would be. 
+	 * 
+	 * add, sub, mult and the comparisons then work on the longs directly and the result 
+	 * is identical to the BigDecimal calculation. If the result does not fit, or the 
+	 * operation is not supported, it falls back to the BigDecimal.  
+	 */
+	private static final long COMPACT_LIMIT = 1000000000000000000L;
+	
+	private static final long[] TEN_POWERS = {
+			1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L, 1000000000L,
+			10000000000L, 100000000000L, 1000000000000L, 10000000000000L, 100000000000000L,
+			1000000000000000L, 10000000000000000L, 100000000000000000L, 1000000000000000000L };
+	
+	/**
+	 * Used when aligning the scale of a compact number overflows
+	 */
+	private static final long ALIGN_OVERFLOW = Long.MIN_VALUE;
+	
 	/**
 	 * The decimal precision of the significant digits.
 	 */
@@ -67,91 +87,213 @@ public class MiniNumber implements Streamable, Comparable<MiniNumber> {
 	public static final MiniNumber POINTNINE 	= new MiniNumber("0.9");
 	
 	/**
-	 * The number representation
+	 * The number representation - created when needed if compact 
 	 */
 	private BigDecimal mNumber;
 	
+	/**
+	 * The compact representation
+	 */
+	private boolean mCompact;
+	private long    mUnscaled;
+	private int     mScale;
+	
 	/**
 	 * 
 	 */
 	public MiniNumber(){
-		mNumber = BigDecimal.ZERO;
+		this(0L, 0);
 	}
 	
 	public MiniNumber(int zNumber){
-		mNumber = new BigDecimal(zNumber,mMathContext);
+		this((long)zNumber);
 	}
 	
 	public MiniNumber(long zNumber){
-		mNumber = new BigDecimal(zNumber,mMathContext);
+		if(zNumber > -COMPACT_LIMIT && zNumber < COMPACT_LIMIT) {
+			setCompact(zNumber, 0);
+		}else {
+			setBigDecimal(new BigDecimal(zNumber,mMathContext));
+		}
 	}
 
 	public MiniNumber(BigInteger zNumber){
-		mNumber = new BigDecimal(zNumber,mMathContext);
+		setBigDecimal(new BigDecimal(zNumber,mMathContext));
 	}
 	
 	public MiniNumber(BigDecimal zBigD){
-		mNumber = zBigD;
+		setBigDecimal(zBigD);
 	}
 	
 	public MiniNumber(String zNumber){
-		mNumber = new BigDecimal(zNumber,mMathContext);
+		setBigDecimal(new BigDecimal(zNumber,mMathContext));
+	}
+	
+	private MiniNumber(long zUnscaled, int zScale){
+		setCompact(zUnscaled, zScale);
+	}
+	
+	private void setCompact(long zUnscaled, int zScale) {
+		mNumber   = null;
+		mCompact  = true;
+		mUnscaled = zUnscaled;
+		mScale    = zScale;
+	}
+	
+	private void setBigDecimal(BigDecimal zBigD) {
+		mNumber = zBigD;
+		
+		//Can we use the compact form as well..
+		mCompact = zBigD.precision() <= 18;
+		if(mCompact) {
+			mUnscaled = zBigD.unscaledValue().longValue();
+			mScale    = zBigD.scale();
+		}
+	}
+	
+	/**
+	 * Multiply the unscaled value by 10^zDigits - ALIGN_OVERFLOW if it is no longer compact
+	 */
+	private static long alignUnscaled(long zUnscaled, long zDigits) {
+		if(zDigits == 0 || zUnscaled == 0) {
+			return zUnscaled;
+		}
+		
+		if(zDigits > 18) {
+			return ALIGN_OVERFLOW;
+		}
+		
+		long max = TEN_POWERS[18 - (int)zDigits];
+		if(zUnscaled >= max || zUnscaled <= -max) {
+			return ALIGN_OVERFLOW;
+		}
+		
+		return zUnscaled * TEN_POWERS[(int)zDigits];
+	}
+	
+	/**
+	 * Number of decimal digits in the unscaled value
+	 */
+	private static int digits(long zUnscaled) {
+		long abs = Math.abs(zUnscaled);
+		int digits = 1;
+		while(digits < 19 && abs >= TEN_POWERS[digits]) {
+			digits++;
+		}
+		return digits;
 	}
 	
 	public BigDecimal getAsBigDecimal() {
+		if(mNumber == null) {
+			mNumber = BigDecimal.valueOf(mUnscaled, mScale);
+		}
 		return mNumber;
 	}
 	
 	public BigInteger getAsBigInteger() {
-		return mNumber.toBigInteger();
+		return getAsBigDecimal().toBigInteger();
 	}
 	
 	public double getAsDouble() {
-		return mNumber.doubleValue();
+		return getAsBigDecimal().doubleValue();
 	}
 	
 	public long getAsLong() {
-		return mNumber.longValue();
+		if(mCompact && mScale >= 0) {
+			if(mScale > 18) {
+				return 0;
+			}
+			return mUnscaled / TEN_POWERS[mScale];
+		}
+		return getAsBigDecimal().longValue();
 	}
 	
 	public int getAsInt() {
-		return mNumber.intValue();
+		if(mCompact && mScale >= 0) {
+			return (int)getAsLong();
+		}
+		return getAsBigDecimal().intValue();
 	}
 	
 	public MiniNumber add(MiniNumber zNumber) {
-		return new MiniNumber( mNumber.add(zNumber.getAsBigDecimal(),mMathContext) );
+		if(mCompact && zNumber.mCompact) {
+			int scale = Math.max(mScale, zNumber.mScale);
+			long a    = alignUnscaled(mUnscaled, (long)scale - mScale);
+			long b    = alignUnscaled(zNumber.mUnscaled, (long)scale - zNumber.mScale);
+			if(a != ALIGN_OVERFLOW && b != ALIGN_OVERFLOW) {
+				long sum = a + b;
+				if(sum > -COMPACT_LIMIT && sum < COMPACT_LIMIT) {
+					return new MiniNumber(sum, scale);
+				}
+			}
+		}
+		
+		return new MiniNumber( getAsBigDecimal().add(zNumber.getAsBigDecimal(),mMathContext) );
 	}
 	
 	public MiniNumber sub(MiniNumber zNumber) {
-		return new MiniNumber( mNumber.subtract(zNumber.getAsBigDecimal(),mMathContext) );
+		if(mCompact && zNumber.mCompact) {
+			int scale = Math.max(mScale, zNumber.mScale);
+			long a    = alignUnscaled(mUnscaled, (long)scale - mScale);
+			long b    = alignUnscaled(zNumber.mUnscaled, (long)scale - zNumber.mScale);
+			if(a != ALIGN_OVERFLOW && b != ALIGN_OVERFLOW) {
+				long diff = a - b;
+				if(diff > -COMPACT_LIMIT && diff < COMPACT_LIMIT) {
+					return new MiniNumber(diff, scale);
+				}
+			}
+		}
+		
+		return new MiniNumber( getAsBigDecimal().subtract(zNumber.getAsBigDecimal(),mMathContext) );
 	}
 	
 	public MiniNumber div(MiniNumber zNumber) {
-		return new MiniNumber( mNumber.divide(zNumber.getAsBigDecimal(), mMathContext) );
+		return new MiniNumber( getAsBigDecimal().divide(zNumber.getAsBigDecimal(), mMathContext) );
 	}
 	
 	public MiniNumber divRoundDown(MiniNumber zNumber) {
-		return new MiniNumber( mNumber.divide(zNumber.getAsBigDecimal(), RoundingMode.DOWN) );
+		//Result has the same scale as this number
+		if(mCompact && zNumber.mCompact && zNumber.mUnscaled != 0 && zNumber.mScale >= 0) {
+			long num = alignUnscaled(mUnscaled, zNumber.mScale);
+			if(num != ALIGN_OVERFLOW) {
+				return new MiniNumber(num / zNumber.mUnscaled, mScale);
+			}
+		}
+		
+		return new MiniNumber( getAsBigDecimal().divide(zNumber.getAsBigDecimal(), RoundingMode.DOWN) );
 	}
 	
 	public MiniNumber mult(MiniNumber zNumber) {
-		return new MiniNumber( mNumber.multiply(zNumber.getAsBigDecimal(),mMathContext) );
+		if(mCompact && zNumber.mCompact) {
+			long scale = (long)mScale + zNumber.mScale;
+			if(scale == (int)scale && digits(mUnscaled) + digits(zNumber.mUnscaled) <= 18) {
+				return new MiniNumber(mUnscaled * zNumber.mUnscaled, (int)scale);
+			}
+		}
+		
+		return new MiniNumber( getAsBigDecimal().multiply(zNumber.getAsBigDecimal(),mMathContext) );
 	}
 	
 	public MiniNumber pow(int zNumber) {
-		return new MiniNumber( mNumber.pow(zNumber,mMathContext) );
+		return new MiniNumber( getAsBigDecimal().pow(zNumber,mMathContext) );
 	}
 	
 	public MiniNumber modulo(MiniNumber zNumber) {
-		return new MiniNumber( mNumber.remainder(zNumber.getAsBigDecimal(),mMathContext) );
+		return new MiniNumber( getAsBigDecimal().remainder(zNumber.getAsBigDecimal(),mMathContext) );
 	}
 	
 	public MiniNumber floor() {
-		return new MiniNumber( mNumber.setScale(0, RoundingMode.FLOOR) ) ;
+		if(mCompact && mScale == 0) {
+			return this;
+		}
+		return new MiniNumber( getAsBigDecimal().setScale(0, RoundingMode.FLOOR) ) ;
 	}
 	
 	public MiniNumber ceil() {
-		return new MiniNumber( mNumber.setScale(0, RoundingMode.CEILING) ) ;
+		if(mCompact && mScale == 0) {
+			return this;
+		}
+		return new MiniNumber( getAsBigDecimal().setScale(0, RoundingMode.CEILING) ) ;
 	}
 	
 	public MiniNumber setSignificantDigits(int zSignificantDigits) {
@@ -159,24 +301,36 @@ public class MiniNumber implements Streamable, Comparable<MiniNumber> {
 		if(sigdig>18) {
 			sigdig = 18;	
 		}
-		return new MiniNumber( mNumber.round(new MathContext(sigdig, RoundingMode.DOWN))) ;
+		return new MiniNumber( getAsBigDecimal().round(new MathContext(sigdig, RoundingMode.DOWN))) ;
 	}
 	
 	public MiniNumber abs() {
-		return new MiniNumber( mNumber.abs() ) ;
+		if(mCompact) {
+			return new MiniNumber(Math.abs(mUnscaled), mScale);
+		}
+		return new MiniNumber( getAsBigDecimal().abs() ) ;
 	}
 		
 	public MiniNumber increment() {
-		return new MiniNumber( mNumber.add(BigDecimal.ONE,mMathContext) );
+		return add(ONE);
 	}
 	
 	public MiniNumber decrement() {
-		return new MiniNumber( mNumber.subtract(BigDecimal.ONE,mMathContext) );
+		return sub(ONE);
 	}
 
 	@Override
 	public int compareTo(MiniNumber zCompare) {
-		return mNumber.compareTo(zCompare.getAsBigDecimal());
+		if(mCompact && zCompare.mCompact) {
+			int scale = Math.max(mScale, zCompare.mScale);
+			long a    = alignUnscaled(mUnscaled, (long)scale - mScale);
+			long b    = alignUnscaled(zCompare.mUnscaled, (long)scale - zCompare.mScale);
+			if(a != ALIGN_OVERFLOW && b != ALIGN_OVERFLOW) {
+				return Long.compare(a, b);
+			}
+		}
+		
+		return getAsBigDecimal().compareTo(zCompare.getAsBigDecimal());
 	}
 	
 	public boolean isEqual(MiniNumber zNumber) {
@@ -201,7 +355,7 @@ public class MiniNumber implements Streamable, Comparable<MiniNumber> {
 		
 	@Override
 	public String toString(){
-		return mNumber.stripTrailingZeros().toPlainString();
+		return getAsBigDecimal().stripTrailingZeros().toPlainString();
 	}
 
 	/**
@@ -209,6 +363,21 @@ public class MiniNumber implements Streamable, Comparable<MiniNumber> {
 	 */
 	@Override
 	public void writeDataStream(DataOutputStream zOut) throws IOException {
+		if(mCompact) {
+			//Write out the scale..
+			zOut.writeInt(mScale);
+			
+			//Same bytes as BigInteger.toByteArray()
+			long val   = mUnscaled;
+			int bitlen = 64 - Long.numberOfLeadingZeros(val < 0 ? ~val : val);
+			int len    = bitlen / 8 + 1;
+			zOut.writeInt(len);
+			for(int i=len-1;i>=0;i--) {
+				zOut.writeByte((int)(val >> (i*8)));
+			}
+			return;
+		}
+		
 		//Write out the scale..
 		zOut.writeInt(mNumber.scale());
 		
@@ -234,9 +403,22 @@ public class MiniNumber implements Streamable, Comparable<MiniNumber> {
 		byte[] data = new byte[len];
 		zIn.readFully(data);
 		
+		//Does it fit in a long..
+		if(len <= 8) {
+			long unscaled = data[0];
+			for(int i=1;i<len;i++) {
+				unscaled = (unscaled << 8) | (data[i] & 0xFF);
+			}
+			
+			if(unscaled > -COMPACT_LIMIT && unscaled < COMPACT_LIMIT) {
+				setCompact(unscaled, scale);
+				return;
+			}
+		}
+		
 		//And create..
 		BigInteger unscaled = new BigInteger(data);
-		mNumber = new BigDecimal(unscaled,scale,mMathContext);
+		setBigDecimal(new BigDecimal(unscaled,scale,mMathContext));
 	}
 
 	public static MiniNumber ReadFromStream(DataInputStream zIn) throws IOException{
@@ -245,6 +427,36 @@ public class MiniNumber implements Streamable, Comparable<MiniNumber> {
 		return data;
 	}
 	
+	/**
+	 * Random number with a random scale - mostly compact, sometimes not
+	 */
+	private static BigDecimal randomBigDecimal(java.util.Random zRand) {
+		int digits = 1 + zRand.nextInt(22);
+		StringBuilder num = new StringBuilder();
+		if(zRand.nextBoolean()) {
+			num.append("-");
+		}
+		for(int i=0;i<digits;i++) {
+			num.append(zRand.nextInt(10));
+		}
+		int scale = zRand.nextInt(24) - 4;
+		
+		return new BigDecimal(new BigInteger(num.toString()), scale);
+	}
+	
+	private static boolean sameBigDecimal(BigDecimal zOne, BigDecimal zTwo) {
+		//Must be EXACTLY the same - scale as well..
+		return zOne.equals(zTwo);
+	}
+	
+	private static byte[] getStreamBytes(MiniNumber zNumber) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		DataOutputStream dos = new DataOutputStream(baos);
+		zNumber.writeDataStream(dos);
+		dos.flush();
+		return baos.toByteArray();
+	}
+	
 	public static void main(String[] zargs) {
 		MiniNumber num = new MiniNumber("100300000.040060012");
 		
@@ -268,7 +480,94 @@ public class MiniNumber implements Streamable, Comparable<MiniNumber> {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
 		}
+		
+		//Check the compact form gives EXACTLY the same results as the BigDecimal..
+		java.util.Random rand = new java.util.Random(42);
+		int errors = 0;
+		int tests  = 1000000;
+		try {
+			for(int i=0;i<tests;i++) {
+				BigDecimal b1 = randomBigDecimal(rand);
+				BigDecimal b2 = randomBigDecimal(rand);
+				
+				//Through the String constructor like a user / script value 
+				BigDecimal r1 = new BigDecimal(b1.toString(), mMathContext);
+				BigDecimal r2 = new BigDecimal(b2.toString(), mMathContext);
+				MiniNumber m1 = new MiniNumber(b1.toString());
+				MiniNumber m2 = new MiniNumber(b2.toString());
+				
+				boolean ok = true;
+				ok &= sameBigDecimal(r1.add(r2, mMathContext), m1.add(m2).getAsBigDecimal());
+				ok &= sameBigDecimal(r1.subtract(r2, mMathContext), m1.sub(m2).getAsBigDecimal());
+				ok &= sameBigDecimal(r1.multiply(r2, mMathContext), m1.mult(m2).getAsBigDecimal());
+				ok &= r1.compareTo(r2) == m1.compareTo(m2);
+				ok &= r1.longValue() == m1.getAsLong();
+				ok &= r1.intValue() == m1.getAsInt();
+				ok &= sameBigDecimal(r1.abs(), m1.abs().getAsBigDecimal());
+				ok &= sameBigDecimal(r1.setScale(0, RoundingMode.FLOOR), m1.floor().getAsBigDecimal());
+				if(r2.signum() != 0) {
+					ok &= sameBigDecimal(r1.divide(r2, RoundingMode.DOWN), m1.divRoundDown(m2).getAsBigDecimal());
+				}
+				
+				//Stream encoding must be identical
+				MiniNumber big = new MiniNumber(r1);
+				big.mCompact   = false;
+				ok &= java.util.Arrays.equals(getStreamBytes(big), getStreamBytes(m1));
+				
+				MiniNumber read = MiniNumber.ReadFromStream(new DataInputStream(new ByteArrayInputStream(getStreamBytes(m1))));
+				ok &= sameBigDecimal(r1, read.getAsBigDecimal());
+				
+				if(!ok) {
+					errors++;
+					if(errors < 10) {
+						System.out.println("MISMATCH "+b1+" "+b2);	
+					}
+				}
+			}
+		}catch(IOException exc) {
+			exc.printStackTrace();
+		}
+		System.out.println("Compact tests "+tests+" errors "+errors);
+		
+		//And now the speed.. summing and checking amounts like a transaction
+		MiniNumber[] amounts  = new MiniNumber[16];
+		BigDecimal[] bamounts = new BigDecimal[16];
+		for(int i=0;i<amounts.length;i++) {
+			amounts[i]  = new MiniNumber(rand.nextInt(1000000)+"."+rand.nextInt(1000));
+			bamounts[i] = amounts[i].getAsBigDecimal();
+		}
+		
+		int loops = 2000000;
+		long timenow = System.currentTimeMillis();
+		int valid = 0;
+		for(int i=0;i<loops;i++) {
+			BigDecimal ins  = BigDecimal.ZERO;
+			BigDecimal outs = BigDecimal.ZERO;
+			for(int j=0;j<8;j++) {
+				ins  = ins.add(bamounts[j], mMathContext);
+				outs = outs.add(bamounts[j+8], mMathContext);
+			}
+			if(ins.compareTo(outs) >= 0) {
+				valid++;
+			}
+		}
+		long timediff = System.currentTimeMillis() - timenow;
+		System.out.println("BigDecimal "+loops+" txn checks "+timediff+"ms "+valid);
+		
+		timenow = System.currentTimeMillis();
+		valid = 0;
+		for(int i=0;i<loops;i++) {
+			MiniNumber ins  = MiniNumber.ZERO;
+			MiniNumber outs = MiniNumber.ZERO;
+			for(int j=0;j<8;j++) {
+				ins  = ins.add(amounts[j]);
+				outs = outs.add(amounts[j+8]);
+			}
+			if(ins.isMoreEqual(outs)) {
+				valid++;
+			}
+		}
+		timediff = System.currentTimeMillis() - timenow;
+		System.out.println("MiniNumber "+loops+" txn checks "+timediff+"ms "+valid);
 	}
-	
-	
 }
@@ -1,7 +1,10 @@
 package org.minima.objects.greet;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.util.ArrayList;
 
@@ -23,6 +26,21 @@ public class Greeting implements Streamable {
 	 */
 	ArrayList<HashNumber> mTxPowList = new ArrayList<>(); 
 	
+	/**
+	 * What else we can do - sent after the list in a block with its own length, so older 
+	 * peers ignore it and newer fields can be added to the block later
+	 */
+	public static final int CAPABILITY_COMPRESSION 	= 1;
+	public static final int CAPABILITY_HEADERS 		= 2;
+	public static final int CAPABILITY_WINDOW 		= 4;
+	
+	MiniNumber mCapabilities = new MiniNumber(CAPABILITY_COMPRESSION | CAPABILITY_HEADERS);
+	
+	/**
+	 * Max size of the extra block
+	 */
+	public static final int MAX_EXTENSION = 1024;
+	
 	public Greeting() {}
 	
 	public void addBlock(MiniData zHash, MiniNumber zBlockNumber){
@@ -38,6 +56,37 @@ public class Greeting implements Streamable {
 		return mVersion.toString();
 	}
 	
+	public boolean supportsCompression() {
+		return (mCapabilities.getAsInt() & CAPABILITY_COMPRESSION) != 0;
+	}
+	
+	/**
+	 * Send this peer just the headers when it has nothing
+	 */
+	public boolean supportsHeaders() {
+		return (mCapabilities.getAsInt() & CAPABILITY_HEADERS) != 0;
+	}
+	
+	/**
+	 * Ask for the full blocks of the uncascaded window up to this tip - once the headers are checked
+	 */
+	public void setWindowRequest(HashNumber zTip) {
+		mTxPowList = new ArrayList<>();
+		mTxPowList.add(zTip);
+		mCapabilities = new MiniNumber(mCapabilities.getAsInt() | CAPABILITY_WINDOW);
+	}
+	
+	public boolean isWindowRequest() {
+		return (mCapabilities.getAsInt() & CAPABILITY_WINDOW) != 0 && mTxPowList.size() == 1;
+	}
+	
+	/**
+	 * Ask for the complete SyncPackage when header first has failed
+	 */
+	public void setNoHeaders() {
+		mCapabilities = new MiniNumber(mCapabilities.getAsInt() & ~CAPABILITY_HEADERS);
+	}
+	
 	@Override
 	public void writeDataStream(DataOutputStream zOut) throws IOException {
 		//First the version.. 
@@ -52,6 +101,16 @@ public class Greeting implements Streamable {
 		for(HashNumber hntxpow : mTxPowList) {
 			hntxpow.writeDataStream(zOut);
 		}
+		
+		//And what we can do - length first
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		DataOutputStream dos = new DataOutputStream(baos);
+		mCapabilities.writeDataStream(dos);
+		dos.flush();
+		
+		byte[] ext = baos.toByteArray();
+		zOut.writeInt(ext.length);
+		zOut.write(ext);
 	}
 
 	@Override
@@ -65,6 +124,26 @@ public class Greeting implements Streamable {
 			HashNumber hn = HashNumber.ReadFromStream(zIn);
 			mTxPowList.add(hn);
 		}
+		
+		//The extra block - older peers end the Greeting after the list
+		int extlen = 0;
+		try {
+			extlen = zIn.readInt();
+		}catch(EOFException exc) {
+			mCapabilities = MiniNumber.ZERO;
+			return;
+		}
+		
+		if(extlen < 0 || extlen > MAX_EXTENSION) {
+			throw new IOException("Greeting extension length invalid "+extlen);
+		}
+		
+		byte[] ext = new byte[extlen];
+		zIn.readFully(ext);
+		
+		//Only read what we know - anything after it is from a newer peer
+		DataInputStream extin = new DataInputStream(new ByteArrayInputStream(ext));
+		mCapabilities = MiniNumber.ReadFromStream(extin);
 	}
 	
 	public static Greeting ReadFromStream(DataInputStream zIn) throws IOException {
@@ -1,28 +1,42 @@
 package org.minima.objects.greet;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.math.BigInteger;
 import java.util.ArrayList;
 
 import org.minima.objects.TxPoW;
 import org.minima.objects.base.MiniByte;
+import org.minima.objects.base.MiniData;
 import org.minima.objects.base.MiniNumber;
+import org.minima.system.network.MinimaReader;
+import org.minima.utils.Compressor;
 import org.minima.utils.Streamable;
 
 public class TxPoWList implements Streamable {
-
+	
+	/**
+	 * Starts a compressed list. The plain list starts with the scale of a MiniNumber - always 0.
+	 */
+	public static final int COMPRESSED_MAGIC = 0x4D435450;
+	
 	//Is this list a crossover just appended to your current or a totally new IBD
 	boolean mCrossover = false;
 	
 	ArrayList<TxPoW> mTxPowList = new ArrayList<>();
 	
+	//Compress when written - ONLY for peers that said they can read it
+	boolean mCompress = false;
+	
 	public TxPoWList() {}
 	
 	public void addTxPow(TxPoW zTxPoW) {
 		mTxPowList.add(0,zTxPoW);
 	}
-
+	
 	public ArrayList<TxPoW> getList(){
 		return mTxPowList;
 	}
@@ -40,8 +54,48 @@ public class TxPoWList implements Streamable {
 		mCrossover = zCrossOver;
 	}
 	
+	public void setCompress(boolean zCompress) {
+		mCompress = zCompress;
+	}
+	
+	/**
+	 * The plain list as bytes
+	 */
+	public byte[] getUncompressedData() throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		DataOutputStream dos = new DataOutputStream(baos);
+		writeUncompressed(dos);
+		dos.flush();
+		return baos.toByteArray();
+	}
+	
 	@Override
 	public void writeDataStream(DataOutputStream zOut) throws IOException {
+		if(!mCompress) {
+			writeUncompressed(zOut);
+			return;
+		}
+		
+		byte[] raw = getUncompressedData();
+		
+		//Only worth it for big lists..
+		if(raw.length >= Compressor.COMPRESS_MIN) {
+			byte[] comp = Compressor.compress(raw);
+			if(comp.length < raw.length) {
+				zOut.writeInt(COMPRESSED_MAGIC);
+				new MiniNumber(raw.length).writeDataStream(zOut);
+				new MiniData(comp).writeDataStream(zOut);
+				
+				Compressor.sent(raw.length, comp.length, true);
+				return;
+			}
+		}
+		
+		zOut.write(raw);
+		Compressor.sent(raw.length, raw.length, false);
+	}
+	
+	private void writeUncompressed(DataOutputStream zOut) throws IOException {
 		int len = mTxPowList.size();
 		MiniNumber minlen = new MiniNumber(len);
 		minlen.writeDataStream(zOut);
@@ -51,19 +105,47 @@ public class TxPoWList implements Streamable {
 		}
 		
 		if(isCrossover()) {
-			MiniByte.TRUE.writeDataStream(zOut);	
+			MiniByte.TRUE.writeDataStream(zOut);
 		}else {
 			MiniByte.FALSE.writeDataStream(zOut);
 		}
 	}
-
+	
 	@Override
 	public void readDataStream(DataInputStream zIn) throws IOException {
-		MiniNumber minlen = MiniNumber.ReadFromStream(zIn);
-		int len = minlen.getAsInt();
+		//Compressed or the scale of the length
+		int first = zIn.readInt();
 		
+		if(first == COMPRESSED_MAGIC) {
+			int rawlen  = MiniNumber.ReadFromStream(zIn).getAsInt();
+			MiniData comp = MiniData.ReadFromStream(zIn);
+			
+			byte[] raw = Compressor.decompress(comp.getData(), rawlen, MinimaReader.MAX_INTRO);
+			
+			DataInputStream dis = new DataInputStream(new ByteArrayInputStream(raw));
+			readUncompressed(dis, MiniNumber.ReadFromStream(dis).getAsInt());
+			dis.close();
+			
+		}else {
+			//The rest of the MiniNumber - a whole number so scale 0
+			if(first != 0) {
+				throw new IOException("ERROR reading TxPoWList - invalid length scale "+first);
+			}
+			
+			int numlen = zIn.readInt();
+			if(numlen > 20 || numlen<1) {
+				throw new IOException("ERROR reading TxPoWList - invalid length "+numlen);
+			}
+			byte[] number = new byte[numlen];
+			zIn.readFully(number);
+			
+			readUncompressed(zIn, new BigInteger(number).intValue());
+		}
+	}
+	
+	private void readUncompressed(DataInputStream zIn, int zLength) throws IOException {
 		mTxPowList = new ArrayList<>();
-		for(int i=0;i<len;i++) {
+		for(int i=0;i<zLength;i++) {
 			TxPoW txp = new TxPoW();
 			txp.readDataStream(zIn);
 			mTxPowList.add(txp);
@@ -168,48 +168,51 @@ public class ConsensusBackup extends ConsensusProcessor {
 			//Get the SyncPackage
 			MiniNumber casc = sp.getCascadeNode();
 			
-			//Drill down
+			//Drill down - the TxPoW files are loaded ahead in parallel, added in order
 			ArrayList<SyncPacket> packets = sp.getAllNodes();
 			float syncsize = packets.size();
 			float tot = 0;
-			for(SyncPacket spack : packets) {
-				//Print some stuff..
-				int curr  = (int)( (tot++ / syncsize) *100);
-				getConsensusHandler().updateListeners(new Message(ConsensusHandler.CONSENSUS_NOTIFY_INITIALPERC).addString("info", "Checking DB.."+curr+"%"));
-				
-				TxPoW txpow     = spack.getTxPOW();
-				MMRSet mmrset   = spack.getMMRSet();
-				boolean cascade = spack.isCascade();
-				
-				//Check all MMR in the unbroken chain.. no point in cascade as may have changed..
-				if(mmrset!=null) {
-					if(mmrset.getBlockTime().isMoreEqual(casc)) {
-						getMainDB().scanMMRSetForCoins(mmrset);
+			SyncPipeline pipeline = new SyncPipeline(packets, SyncPipeline.getBackupLoader(backup));
+			try {
+				while(pipeline.hasNext()) {
+					SyncPipeline.PreparedPacket prep = pipeline.next();
+					SyncPacket spack = prep.getPacket();
+					
+					//Print some stuff..
+					int curr  = (int)( (tot++ / syncsize) *100);
+					getConsensusHandler().updateListeners(new Message(ConsensusHandler.CONSENSUS_NOTIFY_INITIALPERC).addString("info", "Checking DB.."+curr+"%"));
+					
+					TxPoW txpow     = spack.getTxPOW();
+					MMRSet mmrset   = spack.getMMRSet();
+					boolean cascade = spack.isCascade();
+					
+					//Check all MMR in the unbroken chain.. no point in cascade as may have changed..
+					if(mmrset!=null) {
+						if(mmrset.getBlockTime().isMoreEqual(casc)) {
+							getMainDB().scanMMRSetForCoins(mmrset);
+						}
 					}
-				}
-				
-				//Add it to the DB..
-				BlockTreeNode node = getMainDB().hardAddTxPOWBlock(txpow, mmrset, cascade);
-			
-				//Load the TxPOW files in the block..
-				ArrayList<MiniData> txns = txpow.getBlockTransactions();
-				for(MiniData txn : txns) {
-					TxPoW txinblock = loadTxPOW(backup.getTxpowFile(txn));
 					
-					//Add it..
-					if(txinblock != null) {
+					//Add it to the DB..
+					BlockTreeNode node = getMainDB().hardAddTxPOWBlock(txpow, mmrset, cascade);
+				
+					//Add the TxPOW files in the block..
+					for(TxPoW txinblock : prep.getBlockTxns()) {
 						getMainDB().addNewTxPow(txinblock);	
 					}
-				}
-			
-				//Is this the cascade block
-				if(txpow.getBlockNumber().isEqual(sp.getCascadeNode())) {
-					getMainDB().hardSetCascadeNode(node);
-				}
 				
-				//Store it..
-				getBackup().backupTxpow(txpow);
+					//Is this the cascade block
+					if(txpow.getBlockNumber().isEqual(sp.getCascadeNode())) {
+						getMainDB().hardSetCascadeNode(node);
+					}
+					
+					//Store it..
+					getConsensusHandler().getTxPoWWriter().backupTxPoW(txpow);
+				}
+			}finally {
+				pipeline.shutdown();
 			}
+			
 			getConsensusHandler().updateListeners(new Message(ConsensusHandler.CONSENSUS_NOTIFY_INITIALPERC).addString("info", "Checking DB..100%"));
 			MinimaLogger.log("Checking DB.. 100%");
 			
@@ -276,21 +279,17 @@ public class ConsensusBackup extends ConsensusProcessor {
 		}
 		
 		//The TxPOW File..
-		TxPoW txpow    = new TxPoW();
+		TxPoW txpow = null;
 		
 		try {
 			//Load the complete file first..
 			byte[] txfile = MiniFile.readCompleteFile(zTxpowFile);
 			
-			//Now load from memory..
-			ByteArrayInputStream bais = new ByteArrayInputStream(txfile);
-			DataInputStream dis = new DataInputStream(bais);
-			txpow.readDataStream(dis);
-			dis.close();
-			bais.close();
+			//Now load from memory.. the body is only decoded if it is used
+			txpow = TxPoW.ReadLazyFromData(txfile);
 			
 		} catch (Exception e) {
-			MinimaLogger.log("ERROR loading TxPOW "+zTxpowFile.getName());
+			MinimaLogger.log("ERROR loading TxPOW "+zTxpowFile.getName()+" "+e);
 			
 			//Delete it..
 			zTxpowFile.delete();
@@ -0,0 +1,124 @@
+package org.minima.system.brains;
+
+import org.minima.objects.TxPoW;
+import org.minima.objects.base.MiniData;
+import org.minima.system.Main;
+import org.minima.system.network.NetworkHandler;
+import org.minima.system.network.minidapps.DAPPManager;
+import org.minima.utils.json.JSONObject;
+import org.minima.utils.messages.Message;
+import org.minima.utils.messages.MessageProcessor;
+
+/**
+ * Sends the MiniDAPP events for a processed TxPoW on its own thread.
+ * 
+ * The JSON is only made if there is a MiniDAPP to send it to - and only once per TxPoW.
+ * The TxPoW is passed serialized so this thread never reads one the consensus thread can change.
+ * 
+ * @author spartacusrex
+ */
+public class ConsensusEvents extends MessageProcessor {
+
+	public static final String EVENTS_TXPOW 	= "EVENTS_TXPOW";
+	public static final String EVENTS_NEWBLOCK 	= "EVENTS_NEWBLOCK";
+	
+	public ConsensusEvents() {
+		super("CONSENSUS EVENTS");
+	}
+	
+	/**
+	 * A new TxPoW has been processed
+	 */
+	public void newTxPoW(TxPoW zTxPoW, boolean zTransaction, boolean zRelevant) {
+		MiniData data = getData(zTxPoW);
+		if(data == null) {
+			return;
+		}
+		
+		PostMessage(new Message(EVENTS_TXPOW)
+				.addObject("txpow", data)
+				.addBoolean("transaction", zTransaction)
+				.addBoolean("relevant", zRelevant));
+	}
+	
+	/**
+	 * The chain tip has changed
+	 */
+	public void newBlock(TxPoW zTip) {
+		MiniData data = getData(zTip);
+		if(data == null) {
+			return;
+		}
+		
+		PostMessage(new Message(EVENTS_NEWBLOCK).addObject("txpow", data));
+	}
+	
+	/**
+	 * The serialized TxPoW - null if no one is listening
+	 */
+	private MiniData getData(TxPoW zTxPoW) {
+		DAPPManager dapps = getDAPPManager();
+		if(dapps == null || !dapps.hasListeners()) {
+			return null;
+		}
+		return TxPoWWriter.getTxPoWData(zTxPoW);
+	}
+	
+	private DAPPManager getDAPPManager() {
+		NetworkHandler network = Main.getMainHandler().getNetworkHandler();
+		if(network == null) {
+			return null;
+		}
+		return network.getDAPPManager();
+	}
+	
+	@Override
+	protected void processMessage(Message zMessage) throws Exception {
+		//Is anyone listening..
+		DAPPManager dapps = getDAPPManager();
+		if(dapps == null || !dapps.hasListeners()) {
+			return;
+		}
+		
+		if(zMessage.isMessageType(EVENTS_TXPOW)) {
+			TxPoW txpow = readTxPoW(zMessage);
+			
+			//Only make this once
+			JSONObject txjson = txpow.toJSON();
+			
+			//Send a message to all about a new TxPoW (may or may not be a transaction or a block..)
+			JSONObject newtxpow = new JSONObject();
+			newtxpow.put("event","newtxpow");
+			newtxpow.put("txpow",txjson);
+			postDAPP(dapps, newtxpow);
+			
+			if(zMessage.getBoolean("transaction")) {
+				JSONObject newtrans = new JSONObject();
+				newtrans.put("event","newtransaction");
+				newtrans.put("txpow",txjson);
+				newtrans.put("relevant",zMessage.getBoolean("relevant"));
+				postDAPP(dapps, newtrans);
+			}
+			
+		}else if(zMessage.isMessageType(EVENTS_NEWBLOCK)) {
+			TxPoW txpow = readTxPoW(zMessage);
+			
+			JSONObject newblock = new JSONObject();
+			newblock.put("event","newblock");
+			newblock.put("txpow",txpow.toJSON());
+			postDAPP(dapps, newblock);
+		}
+	}
+	
+	/**
+	 * A copy only this thread uses
+	 */
+	private TxPoW readTxPoW(Message zMessage) throws Exception {
+		MiniData data = (MiniData) zMessage.getObject("txpow");
+		return TxPoWWriter.readTxPoWData(data);
+	}
+	
+	private void postDAPP(DAPPManager zDAPPs, JSONObject zJSON) {
+		zDAPPs.PostMessage(new Message(DAPPManager.DAPP_MINIDAPP_POSTALL).addObject("message", zJSON));
+	}
+}
@@ -30,6 +30,7 @@ import org.minima.utils.json.JSONObject;
 import org.minima.utils.messages.Message;
 import org.minima.utils.messages.MessageListener;
 import org.minima.utils.messages.MessageProcessor;
+import org.minima.utils.messages.MessageRouter;
 import org.minima.utils.messages.TimerMessage;
 
 public class ConsensusHandler extends MessageProcessor {
@@ -120,6 +121,22 @@ public class ConsensusHandler extends MessageProcessor {
 	 */
 	ConsensusBackup mConsensusBackup;
 	
+	/**
+	 * MiniDAPP events and TxPoW backups - done off the consensus thread
+	 */
+	ConsensusEvents mConsensusEvents;
+	TxPoWWriter mTxPoWWriter;
+	
+	/**
+	 * Read-only queries answered from a snapshot - off the consensus thread
+	 */
+	ConsensusReader mConsensusReader;
+	
+	/**
+	 * Sends the sub-processor messages straight to them by type ID
+	 */
+	MessageRouter mRouter;
+	
 	/**
 	 * A list of Listeners.. for important messages..
 	 */
@@ -156,6 +173,21 @@ public class ConsensusHandler extends MessageProcessor {
 		mConsensusPrint  = new ConsensusPrint(mMainDB, this);
 		mConsensusBackup = new ConsensusBackup(mMainDB, this);
 		
+		mConsensusEvents = new ConsensusEvents();
+		mTxPoWWriter     = new TxPoWWriter();
+		mConsensusReader = new ConsensusReader();
+		
+		//All backup writes and deletes go through the writer
+		mMainDB.setTxPoWWriter(mTxPoWWriter);
+		
+		//Route by prefix
+		mRouter = new MessageRouter();
+		mRouter.addPrefix(ConsensusNet.CONSENSUS_PREFIX, mConsensusNet);
+		mRouter.addPrefix(ConsensusTxn.CONSENSUS_PREFIX, mConsensusTxn);
+		mRouter.addPrefix(ConsensusUser.CONSENSUS_PREFIX, mConsensusUser);
+		mRouter.addPrefix(ConsensusPrint.CONSENSUS_PREFIX, mConsensusPrint);
+		mRouter.addPrefix(ConsensusBackup.CONSENSUS_PREFIX, mConsensusBackup);
+		
 		//Are we HARD mining.. debugging / private chain
 		PostTimerMessage(new TimerMessage(1000, CONSENSUS_MINEBLOCK));
 	
@@ -163,6 +195,48 @@ public class ConsensusHandler extends MessageProcessor {
 		PostTimerMessage(new TimerMessage(10 * 60 * 1000, CONSENSUS_AUTOBACKUP));
 	}
 	
+	@Override
+	public void stopMessageProcessor() {
+		//No more new work..
+		super.stopMessageProcessor();
+		
+		mConsensusEvents.stopMessageProcessor();
+		mConsensusReader.shutdown();
+		
+		//And wait for the backups to be written
+		mTxPoWWriter.shutdown();
+	}
+	
+	@Override
+	public void PostMessage(Message zMessage) {
+		//Can it be answered without waiting for the consensus thread..
+		if(mConsensusReader != null && mConsensusReader.canAnswer(zMessage)) {
+			mConsensusReader.answer(zMessage);
+			return;
+		}
+		
+		super.PostMessage(zMessage);
+	}
+	
+	/**
+	 * Called on the consensus thread when the DB has a new state worth reading. 
+	 * 
+	 * Never throws - the balance message that called it must still finish. If the snapshot 
+	 * can't be made the old one is dropped so queries go back to the consensus thread.
+	 */
+	public void publishSnapshot(JSONObject zBalance) {
+		try {
+			mConsensusReader.setSnapshot(ConsensusSnapshot.create(getMainDB(), zBalance, mConsensusReader.getSnapshot()));
+		}catch(Exception exc) {
+			MinimaLogger.log("ERROR making the consensus snapshot "+exc);
+			mConsensusReader.setSnapshot(null);
+		}
+	}
+	
+	public TxPoWWriter getTxPoWWriter() {
+		return mTxPoWWriter;
+	}
+	
 	public void setBackUpManager() {
 		getMainDB().setBackupManager(Main.getMainHandler().getBackupManager());
 	}
@@ -218,6 +292,13 @@ public class ConsensusHandler extends MessageProcessor {
 	
 	@Override
 	protected void processMessage(Message zMessage) throws Exception {
+		/**
+		 * Sub-processor messages - one lookup by type ID
+		 */
+		if(mRouter.route(zMessage)) {
+			return;
+		}
+		
 		/**
 		 * Main processing function.. 
 		 */
@@ -225,14 +306,8 @@ public class ConsensusHandler extends MessageProcessor {
 			//A TXPOW - that has been checked already and added to the DB
 			TxPoW txpow = (TxPoW) zMessage.getObject("txpow");
 			
-			//Send a message to all about a new TxPoW (may or may not be a transaction or a block..)
-			JSONObject newtxpow = new JSONObject();
-			newtxpow.put("event","newtxpow");
-			newtxpow.put("txpow",txpow.toJSON());
-			PostDAPPJSONMessage(newtxpow);
-			
-			//Back it up!
-			Main.getMainHandler().getBackupManager().backupTxpow(txpow);
+			//Back it up! - on the writer thread
+			mTxPoWWriter.backupTxPoW(txpow);
 			
 			//What's the current chain tip..
 			MiniData oldtip = getMainDB().getMainTree().getChainTip().getTxPowID();
@@ -248,15 +323,11 @@ public class ConsensusHandler extends MessageProcessor {
 			if(txpow.isTransaction()) {
 				//Is it relevant to us..
 				relevant = getMainDB().getUserDB().isTransactionRelevant(txpow.getTransaction());
-				
-				//Notify everyone..
-				JSONObject newtrans = new JSONObject();
-				newtrans.put("event","newtransaction");
-				newtrans.put("txpow",txpow.toJSON());
-				newtrans.put("relevant",relevant);
-				PostDAPPJSONMessage(newtrans);
 			}
 			
+			//Send a message to all about a new TxPoW (may or may not be a transaction or a block..)
+			mConsensusEvents.newTxPoW(txpow, txpow.isTransaction(), relevant);
+			
 			//Has there been a change
 			boolean newbalance = false;
 			if(!oldtip.isEqual(newtip.getTxPowID())) {
@@ -266,11 +337,7 @@ public class ConsensusHandler extends MessageProcessor {
 				updateListeners(new Message(CONSENSUS_NOTIFY_NEWBLOCK).addObject("txpow", newtip));
 			
 				//Update the web listeners..
-				//Send this to the WebSocket..
-				JSONObject newblock = new JSONObject();
-				newblock.put("event","newblock");
-				newblock.put("txpow",newtip.toJSON());
-				PostDAPPJSONMessage(newblock);
+				mConsensusEvents.newBlock(newtip);
 				
 				//Do the balance.. Update listeners if changed..
 				PostMessage(new Message(ConsensusPrint.CONSENSUS_BALANCE).addBoolean("hard", true));
@@ -315,36 +382,6 @@ public class ConsensusHandler extends MessageProcessor {
 			//Redo every 10 minutes..
 			PostTimerMessage(new TimerMessage(10 * 60 * 1000, CONSENSUS_AUTOBACKUP));
 			
-		/**
-		 * Network Messages
-		 */
-		}else if(zMessage.getMessageType().startsWith(ConsensusNet.CONSENSUS_PREFIX)) {
-			mConsensusNet.processMessage(zMessage);
-			
-		/**
-		 * Custom Transactions
-		 */
-		}else if(zMessage.getMessageType().startsWith(ConsensusTxn.CONSENSUS_PREFIX)) {
-			mConsensusTxn.processMessage(zMessage);
-		
-		/**
-		 * User Messages
-		 */
-		}else if(zMessage.getMessageType().startsWith(ConsensusUser.CONSENSUS_PREFIX)) {
-			mConsensusUser.processMessage(zMessage);
-		
-		/**
-		 * Print Messages
-		 */
-		}else if(zMessage.getMessageType().startsWith(ConsensusPrint.CONSENSUS_PREFIX)) {
-			mConsensusPrint.processMessage(zMessage);
-		
-		/**
-		 * Backup Messages
-		 */
-		}else if(zMessage.getMessageType().startsWith(ConsensusBackup.CONSENSUS_PREFIX)) {
-			mConsensusBackup.processMessage(zMessage);
-		
 		/**
 		 *  Are we HARD mining
 		 */
@@ -2,6 +2,9 @@ package org.minima.system.brains;
 
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Hashtable;
 
 import org.minima.GlobalParams;
 import org.minima.database.MinimaDB;
@@ -24,7 +27,6 @@ import org.minima.system.network.MinimaClient;
 import org.minima.system.network.MinimaReader;
 import org.minima.system.txpow.TxPoWChecker;
 import org.minima.system.txpow.TxPoWMiner;
-import org.minima.utils.Crypto;
 import org.minima.utils.DataTimer;
 import org.minima.utils.MinimaLogger;
 import org.minima.utils.messages.Message;
@@ -52,6 +54,34 @@ public class ConsensusNet extends ConsensusProcessor {
 	
 	public static final String CONSENSUS_NET_PING 			= CONSENSUS_PREFIX+"NET_MESSAGE_"+MinimaReader.NETMESSAGE_PING.getValue();
 	
+	public static final String CONSENSUS_NET_SYNCCHUNKS 	= CONSENSUS_PREFIX+"NET_SYNCCHUNKS";
+	
+	public static final String CONSENSUS_NET_HEADERSYNC 	= CONSENSUS_PREFIX+"NET_HEADERSYNC";
+	
+	public static final String CONSENSUS_NET_FLUSHREQUESTS 	= CONSENSUS_PREFIX+"NET_FLUSHREQUESTS";
+	
+	/**
+	 * After asking a peer for an announced TxPoWID, how long to collect the next ones it 
+	 * announces before asking for them together. The first is never delayed.
+	 */
+	public static final long REQUEST_WINDOW = 50;
+	
+	/**
+	 * The messages that come straight from a peer - and their names in the metrics
+	 */
+	private static final Hashtable<String, String> NET_MESSAGE_NAMES = new Hashtable<>();
+	static {
+		NET_MESSAGE_NAMES.put(CONSENSUS_NET_INTRO, "intro");
+		NET_MESSAGE_NAMES.put(CONSENSUS_NET_TXPOWID, "txpowid");
+		NET_MESSAGE_NAMES.put(CONSENSUS_NET_TXPOWREQUEST, "txpowrequest");
+		NET_MESSAGE_NAMES.put(CONSENSUS_NET_TXPOW, "txpow");
+		NET_MESSAGE_NAMES.put(CONSENSUS_NET_GREETING, "greeting");
+		NET_MESSAGE_NAMES.put(CONSENSUS_NET_TXPOWLIST_REQUEST, "txpowlistrequest");
+		NET_MESSAGE_NAMES.put(CONSENSUS_NET_TXPOWLIST, "txpowlist");
+		NET_MESSAGE_NAMES.put(CONSENSUS_NET_TXPOWIDLIST, "txpowidlist");
+		NET_MESSAGE_NAMES.put(CONSENSUS_NET_PING, "ping");
+	}
+	
 	/**
 	 * Will we switch to a heavier chain - DEBUG mode for -private
 	 */
@@ -69,6 +99,21 @@ public class ConsensusNet extends ConsensusProcessor {
 	 */
 	public boolean mInitialSync;
 	
+	/**
+	 * The TxPoW requested in chunks after the Initial Sync
+	 */
+	InitialSyncChunks mSyncChunks = null;
+	
+	/**
+	 * The headers sent by peers when we have nothing - before the blocks are asked for
+	 */
+	HeaderSync mHeaderSync = null;
+	
+	/**
+	 * Announced TxPoWIDs waiting to be requested from each peer 
+	 */
+	Hashtable<MinimaClient, ArrayList<MiniData>> mPendingRequests = new Hashtable<>();
+	
 	public ConsensusNet(MinimaDB zDB, ConsensusHandler zHandler) {
 		super(zDB, zHandler);
 		
@@ -106,6 +151,15 @@ public class ConsensusNet extends ConsensusProcessor {
 	
 	public void processMessage(Message zMessage) throws Exception {
 		
+		//Count what came from the peer - not our own reposts of it
+		if(zMessage.exists("netclient") && !(zMessage instanceof TimerMessage) && !zMessage.exists("repost")) {
+			String name = NET_MESSAGE_NAMES.get(zMessage.getMessageType());
+			if(name != null) {
+				MinimaClient client = (MinimaClient) zMessage.getObject("netclient");
+				getNetworkHandler().getPeerMetrics(client).messageIn(name, getPayloadSize(zMessage));
+			}
+		}
+		
 		if(zMessage.isMessageType(CONSENSUS_NET_INITIALISE)) {
 			//An initial Greeting message..
 			Greeting greet = new Greeting();
@@ -142,6 +196,37 @@ public class ConsensusNet extends ConsensusProcessor {
 			//Get the Sync Package..
 			SyncPackage sp = (SyncPackage) zMessage.getObject("sync");
 			
+			//Just the headers - check them and choose the heaviest before asking for the blocks
+			if(HeaderSync.isHeaderPackage(sp)) {
+				processHeaders(zMessage, sp);
+				return;
+			}
+			
+			//The window of the headers we chose..
+			MinimaClient introclient = (MinimaClient) zMessage.getObject("netclient");
+			if(mHeaderSync != null && !mHeaderSync.isWaitingFor(introclient) && mHeaderSync.wasAsked(introclient)) {
+				//A window asked for before - not the one we want now
+				MinimaLogger.log("HEADER SYNC IGNORING OLD WINDOW..");
+				return;
+			}
+			
+			if(mHeaderSync != null && mHeaderSync.isWaitingFor(introclient)) {
+				SyncPackage fullsp = mHeaderSync.checkWindow(sp);
+				if(fullsp == null) {
+					MinimaLogger.log("HEADER SYNC BLOCKS DO NOT MATCH THE HEADERS.. !");
+					peerInvalid(zMessage);
+					mHeaderSync.failed();
+					requestHeaderWindow(zMessage);
+					return;
+				}
+				
+				MinimaLogger.log("HEADER SYNC BLOCKS RECEIVED "+fullsp.getAllNodes().size());
+				sp = fullsp;
+			}
+			
+			//A complete package - headers no longer needed
+			mHeaderSync = null;
+			
 			boolean hardreset = false;
 			MiniNumber cross = MiniNumber.MINUSONE;
 			
@@ -203,52 +288,51 @@ public class ConsensusNet extends ConsensusProcessor {
 				getMainDB().getCoinDB().clearDB();
 				getMainDB().getTxPowDB().ClearDB();
 				
-				//Wipe the txpow folder..
-				BackupManager.safeDelete(backup.getBackUpFolder());
+				//Wipe the txpow folder.. on the writer so it's after any queued writes
+				getConsensusHandler().getTxPoWWriter().wipeFolder(backup.getBackUpFolder());
 				
-				//Drill down 
+				//Drill down - prepared ahead in parallel, added in order
 				ArrayList<SyncPacket> packets = sp.getAllNodes();
 				float totpacks = packets.size();
 				float counter  = 0;
-				for(SyncPacket spack : packets) {
-					TxPoW txpow = spack.getTxPOW();
-					
-					//Store it..
-					backup.backupTxpow(txpow);
-					
-					MMRSet mmr  = spack.getMMRSet();
-					boolean cascade = spack.isCascade();
-					
-					//Add it to the DB..
-					BlockTreeNode node = getMainDB().hardAddTxPOWBlock(txpow, mmr, cascade);
-					
-					//Scan for coins..
-					if(mmr!=null) {
-						getMainDB().scanMMRSetForCoins(mmr);
-					}
-					
-					//Is this the cascade block
-					if(txpow.getBlockNumber().isEqual(sp.getCascadeNode())) {
-						getMainDB().hardSetCascadeNode(node);
-					}
-					
-					//Add all the tokens..
-					if(txpow.isTransaction()) {
-						TokenProof tokp = txpow.getTransaction().getTokenGenerationDetails();
-						if(tokp!=null) {
-							getMainDB().getUserDB().addTokenDetails(tokp);
-						}	
+				SyncPipeline pipeline = new SyncPipeline(packets, null);
+				try {
+					while(pipeline.hasNext()) {
+						SyncPipeline.PreparedPacket prep = pipeline.next();
+						SyncPacket spack = prep.getPacket();
+						TxPoW txpow = spack.getTxPOW();
 						
-						ArrayList<TokenProof> tokens =  txpow.getWitness().getAllTokenDetails();
-						for(TokenProof tp : tokens) {
+						//Store it..
+						getConsensusHandler().getTxPoWWriter().backupTxPoW(txpow);
+						
+						MMRSet mmr  = spack.getMMRSet();
+						boolean cascade = spack.isCascade();
+						
+						//Add it to the DB..
+						BlockTreeNode node = getMainDB().hardAddTxPOWBlock(txpow, mmr, cascade);
+						
+						//Scan for coins..
+						if(mmr!=null) {
+							getMainDB().scanMMRSetForCoins(mmr);
+						}
+						
+						//Is this the cascade block
+						if(txpow.getBlockNumber().isEqual(sp.getCascadeNode())) {
+							getMainDB().hardSetCascadeNode(node);
+						}
+						
+						//Add all the tokens..
+						for(TokenProof tp : prep.getTokens()) {
 							getMainDB().getUserDB().addTokenDetails(tp);
 						}
+						
+						//Notify..
+						counter++;
+						int totperc = (int)((counter / totpacks) * 100.0f);
+						getConsensusHandler().updateListeners(new Message(ConsensusHandler.CONSENSUS_NOTIFY_INITIALPERC).addString("info", "Loading "+totperc+"%"));
 					}
-					
-					//Notify..
-					counter++;
-					int totperc = (int)((counter / totpacks) * 100.0f);
-					getConsensusHandler().updateListeners(new Message(ConsensusHandler.CONSENSUS_NOTIFY_INITIALPERC).addString("info", "Loading "+totperc+"%"));
+				}finally {
+					pipeline.shutdown();
 				}
 				
 				//Reset weights
@@ -272,17 +356,10 @@ public class ConsensusNet extends ConsensusProcessor {
 				
 				//Do you want a copy of ALL the TxPoW in the Blocks.. ? Only really useful for txpowsearch - DEXXED
 				if(mFullSyncOnInit) {
-					//The total list..
-					ArrayList<String> checklist = new ArrayList<>();
-					
-					//Create a TxPOWIDlist of the requested TxPOW..
-					TxPoWIDList txpidlist = new TxPoWIDList();
-					
-					//Get the Client..
-					MinimaClient client = (MinimaClient) zMessage.getObject("netclient");
+					//Split into chunks - spread across all the peers
+					mSyncChunks = new InitialSyncChunks();
 					
 					//Now request all the TXNS in those blocks..
-					int reqtxn = 0;
 					ArrayList<BlockTreeNode> nodes = getMainDB().getMainTree().getAsList(true);
 					for(BlockTreeNode node : nodes) {
 						//Get the TxPoW
@@ -292,54 +369,75 @@ public class ConsensusNet extends ConsensusProcessor {
 						if(txpow.hasBody()) {
 							ArrayList<MiniData> txns = txpow.getBlockTransactions();
 							for(MiniData txn : txns) {
-								//Check for it..
-								String checker = txn.to0xString();
-								if(checklist.contains(checker)) {
-									//We have already sent for it..
-									continue;
-								}
-								
-								//Add it..
-								checklist.add(checker);
-								
-								//We don't have it, get it..
-								txpidlist.addTxPowID(txn);
-							
-								//Have we reached the limit..
-								if(txpidlist.size() > 200) {
-									//Send it..
-									Message req = new Message(MinimaClient.NETCLIENT_TXPOWIDLIST).addObject("txpowidlist", txpidlist);
-									client.PostMessage(req);
-											
-									//Reset..
-									txpidlist = new TxPoWIDList();
-								}
-
-								//Total requests made
-								reqtxn++;
-								
-								//Add it to the list
-								getNetworkHandler().addRequestedInitialSyncTxPow(txn.to0xString());
+								//Only once each..
+								mSyncChunks.addTxPoWID(txn);
 							}
 						}
 					}
+					mSyncChunks.flush();
 					
-					//And finally.. any left..
-					if(txpidlist.size() > 0) {
-						//Send it..
-						Message req = new Message(MinimaClient.NETCLIENT_TXPOWIDLIST).addObject("txpowidlist", txpidlist);
-						client.PostMessage(req);
-								
-						//Reset..
-						txpidlist = new TxPoWIDList();
-					}
-					
+					int reqtxn = mSyncChunks.getTotal();
 					if(reqtxn>0) {
-						MinimaLogger.log("Requested "+reqtxn+" transaction in Initial Blocks..");	
+						MinimaLogger.log("Requested "+reqtxn+" transaction in Initial Blocks..");
+						
+						//Send them out..
+						mSyncChunks.dispatch(getSyncClients(zMessage));
+						
+						//And check on them
+						getConsensusHandler().PostTimerMessage(new TimerMessage(10000, CONSENSUS_NET_SYNCCHUNKS));
+					}else {
+						mSyncChunks = null;
 					}
 				}
 			}
 			
+		}else if(zMessage.isMessageType(CONSENSUS_NET_SYNCCHUNKS)) {
+			//Still going..
+			if(mSyncChunks == null) {
+				return;
+			}
+			
+			//Re-send anything lost or slow
+			ArrayList<MinimaClient> clients = getSyncClients(zMessage);
+			for(MinimaClient slow : mSyncChunks.checkTimeouts(clients)) {
+				getNetworkHandler().getPeerMetrics(slow).requestTimedOut();
+			}
+			mSyncChunks.dispatch(clients);
+			
+			if(mSyncChunks.isFinished()) {
+				MinimaLogger.log("Initial Sync transactions complete "+mSyncChunks.getReceived()+" / "+mSyncChunks.getTotal());
+				mSyncChunks = null;
+			}else {
+				getConsensusHandler().PostTimerMessage(new TimerMessage(10000, CONSENSUS_NET_SYNCCHUNKS));
+			}
+			
+		}else if(zMessage.isMessageType(CONSENSUS_NET_HEADERSYNC)) {
+			//Still going..
+			if(mHeaderSync == null) {
+				return;
+			}
+			
+			//Synced some other way..
+			if(getMainDB().getMainTree().getAsList().size()!=0) {
+				mHeaderSync = null;
+				return;
+			}
+			
+			if(!mHeaderSync.isRequested()) {
+				//Try again with whoever is left..
+				requestHeaderWindow(zMessage);
+				
+			}else if(mHeaderSync.hasTimedOut()) {
+				//Ask someone else
+				getNetworkHandler().getPeerMetrics(mHeaderSync.getRequestedClient()).requestTimedOut();
+				mHeaderSync.failed();
+				requestHeaderWindow(zMessage);
+			}
+			
+			if(mHeaderSync != null) {
+				getConsensusHandler().PostTimerMessage(new TimerMessage(10000, CONSENSUS_NET_HEADERSYNC));
+			}
+			
 		}else if(zMessage.isMessageType(CONSENSUS_NET_GREETING)) {
 			//Get the greeting
 			Greeting greet = (Greeting)zMessage.getObject("greeting");
@@ -349,16 +447,45 @@ public class ConsensusNet extends ConsensusProcessor {
 				MinimaLogger.log("DIFFERENT VERSION ON GREETING "+greet.getVersion());
 			}
 			
+			//Can we send it compressed lists..
+			MinimaClient greetclient = (MinimaClient) zMessage.getObject("netclient");
+			getNetworkHandler().setPeerCompression(greetclient, greet.supportsCompression());
+			
 			//Are we a beginner..
 			if(getMainDB().getMainTree().getAsList().size()==0) {
 				//First timer.. do nothing.. you'll be sent the INTRO message
 				return;
 			}
 			
+			//Asking for the blocks of headers it has checked
+			if(greet.isWindowRequest()) {
+				MinimaClient client = (MinimaClient) zMessage.getObject("netclient");
+				HashNumber tip      = greet.getList().get(0);
+				
+				SyncPackage sp = getMainDB().getWindowSyncPackage(tip.getHash());
+				if(sp == null) {
+					//Moved on.. send the new headers
+					MinimaLogger.log("WINDOW REQUEST NOT IN TREE - Sending headers");
+					sp = getMainDB().getHeaderSyncPackage();
+				}
+				
+				client.PostMessage(new Message(MinimaClient.NETCLIENT_INTRO).addObject("syncpackage", sp));
+				return;
+			}
+			
 			//Get the List..
 			ArrayList<HashNumber> blocks = greet.getList();
 			int greetlen = blocks.size();
 			
+			//Just the headers first..
+			if(greetlen == 0 && greet.supportsHeaders()) {
+				MinimaLogger.log("FIRST TIME SYNC - Sending headers");
+				SyncPackage sp = getMainDB().getHeaderSyncPackage();
+				MinimaClient client = (MinimaClient) zMessage.getObject("netclient");
+				client.PostMessage(new Message(MinimaClient.NETCLIENT_INTRO).addObject("syncpackage", sp));
+				return;
+			}
+			
 			//Do we post a complete package..
 			if(greetlen == 0) {
 				MinimaLogger.log("FIRST TIME SYNC - Sending complete");
@@ -417,7 +544,9 @@ public class ConsensusNet extends ConsensusProcessor {
 			
 			//Now send that..!
 			MinimaClient client = (MinimaClient) zMessage.getObject("netclient");
+			txpowlist.setCompress(getNetworkHandler().isPeerCompression(client));
 			client.PostMessage(new Message(MinimaClient.NETCLIENT_TXPOWLIST).addObject("txpowlist", txpowlist));
+			getNetworkHandler().getPeerMetrics(client).messageOut("txpowlist", getListSize(txpowlist));
 			
 		}else if ( zMessage.isMessageType(CONSENSUS_NET_TXPOWIDLIST)) {
 			TxPoWIDList txpidlist = (TxPoWIDList)zMessage.getObject("txpowidlist");
@@ -439,7 +568,9 @@ public class ConsensusNet extends ConsensusProcessor {
 			
 			//Now send that..!
 			MinimaClient client = (MinimaClient) zMessage.getObject("netclient");
+			txpowlist.setCompress(getNetworkHandler().isPeerCompression(client));
 			client.PostMessage(new Message(MinimaClient.NETCLIENT_TXPOWLIST).addObject("txpowlist", txpowlist));
+			getNetworkHandler().getPeerMetrics(client).messageOut("txpowlist", getListSize(txpowlist));
 			
 		}else if ( zMessage.isMessageType(CONSENSUS_NET_TXPOWLIST)) {
 			TxPoWList txplist     = (TxPoWList)zMessage.getObject("txpowlist"); 
@@ -450,6 +581,11 @@ public class ConsensusNet extends ConsensusProcessor {
 			//Now the Initial SYNC has been done you can receive TXPOW message..
 			setInitialSyncComplete(false);
 			
+			//Do a complete backup.. posted first as the reply may return early
+			if(firsttime) {
+				getConsensusHandler().PostTimerMessage(new TimerMessage(20000,ConsensusBackup.CONSENSUSBACKUP_BACKUP));
+			}
+			
 			if(txplist.isCrossover()) {
 				//Get the NetClient...
 				MinimaClient client = (MinimaClient) zMessage.getObject("netclient");
@@ -459,15 +595,64 @@ public class ConsensusNet extends ConsensusProcessor {
 					Message msg = new Message(CONSENSUS_NET_TXPOW);
 					msg.addObject("txpow", txp);
 					msg.addObject("netclient", client);
+					msg.addBoolean("repost", true);
 					getConsensusHandler().PostMessage(msg);
 				}
 				
 			}else {
-				//Cycle through and process as if IBD data..
+				//Get the NetClient...
+				MinimaClient client = (MinimaClient) zMessage.getObject("netclient");
+				
+				//Split the Initial Sync TxPoW from the missing block transactions
+				ArrayList<TxPoW> ibdtxps = new ArrayList<>();
 				for(TxPoW txp : txps) {
+					if(mSyncChunks != null && mSyncChunks.isMissing(txp.getTxPowID())) {
+						ibdtxps.add(txp);
+						
+					}else if(getNetworkHandler().isRequestedTxPow(txp.getTxPowID().to0xString())) {
+						//Treat as normal TxPOW messages.. checking everything..
+						Message msg = new Message(CONSENSUS_NET_TXPOW);
+						msg.addObject("txpow", txp);
+						msg.addObject("netclient", client);
+						msg.addBoolean("repost", true);
+						getConsensusHandler().PostMessage(msg);
+					}
+				}
+				
+				//Only what was asked for..
+				if(mSyncChunks == null) {
+					return;
+				}
+				
+				//Cycle through and process as if IBD data..
+				for(TxPoW txp : ibdtxps) {
+					//Check Header and Body Agree
+					if(!txp.hasBody() || !txp.getTxHeader().getBodyHash().isEqual(txp.getCalculatedBodyHash())) {
+						MinimaLogger.log("ERROR NET Initial Sync TxHeader and TxBody Mismatch! "+txp.getTxPowID());
+						getNetworkHandler().getPeerMetrics(client).invalidData();
+						continue;
+					}
+					
+					mSyncChunks.received(txp.getTxPowID());
 					processIBDTxPoW(zMessage, txp);
 				}
 				
+				//That chunk is done - send the next
+				ArrayList<MiniData> replyids = new ArrayList<>();
+				for(TxPoW txp : txps) {
+					replyids.add(txp.getTxPowID());
+				}
+				long latency = mSyncChunks.replied(client, replyids);
+				if(latency >= 0) {
+					getNetworkHandler().getPeerMetrics(client).requestAnswered(latency);
+				}
+				mSyncChunks.dispatch(getSyncClients(zMessage));
+				
+				if(mSyncChunks.isFinished()) {
+					MinimaLogger.log("Initial Sync transactions complete "+mSyncChunks.getReceived()+" / "+mSyncChunks.getTotal());
+					mSyncChunks = null;
+				}
+				
 				//And NOW sort the Tree..
 				ArrayList<BlockTreeNode> list = getMainDB().getMainTree().getAsList(true);
 				for(BlockTreeNode treenode : list) {
@@ -500,20 +685,51 @@ public class ConsensusNet extends ConsensusProcessor {
 				}
 			}
 			
-			//Do a complete backup..
-			if(firsttime) {
-				getConsensusHandler().PostTimerMessage(new TimerMessage(20000,ConsensusBackup.CONSENSUSBACKUP_BACKUP));
-			}
-			
 		}else if ( zMessage.isMessageType(CONSENSUS_NET_TXPOWID)) {
 			//Get the ID
 			MiniData txpowid = (MiniData) zMessage.getObject("txpowid");
 			
+			//They have it - no need to tell them
+			MinimaClient client = (MinimaClient) zMessage.getObject("netclient");
+			getNetworkHandler().addPeerKnows(client, txpowid);
+			
 			//Do we have it..
 			if(getMainDB().getTxPOW(txpowid) == null) {
 				//MinimaLogger.log("NEW TXPOWID "+txpowid.to0xString()+" from "+zMessage.getObject("netclient"));
-				//We don't have it, get it..
-				sendTxPowRequest(zMessage, txpowid);
+				//We don't have it, get it.. 
+				ArrayList<MiniData> pending = mPendingRequests.get(client);
+				if(pending == null) {
+					//Straight away - and any they announce soon after are asked for together
+					mPendingRequests.put(client, new ArrayList<MiniData>());
+					
+					TimerMessage flush = new TimerMessage(REQUEST_WINDOW, CONSENSUS_NET_FLUSHREQUESTS);
+					flush.addObject("netclient", client);
+					getConsensusHandler().PostTimerMessage(flush);
+					
+					sendTxPowRequest(zMessage, txpowid);
+				}else {
+					pending.add(txpowid);
+				}
+			}
+		
+		}else if ( zMessage.isMessageType(CONSENSUS_NET_FLUSHREQUESTS)) {
+			MinimaClient client = (MinimaClient) zMessage.getObject("netclient");
+			ArrayList<MiniData> pending = mPendingRequests.remove(client);
+			if(pending == null) {
+				return;
+			}
+			
+			//May have arrived since..
+			HashSet<String> added = new HashSet<>();
+			ArrayList<MiniData> missing = new ArrayList<>();
+			for(MiniData txpowid : pending) {
+				if(getMainDB().getTxPOW(txpowid) == null && added.add(txpowid.to0xString())) {
+					missing.add(txpowid);
+				}
+			}
+			
+			if(missing.size() > 0) {
+				sendTxPowListRequest(zMessage, missing);
 			}
 		
 		}else if(zMessage.isMessageType(CONSENSUS_NET_TXPOWREQUEST)) {
@@ -533,6 +749,7 @@ public class ConsensusNet extends ConsensusProcessor {
 				//Send it to him..
 				Message tx = new Message(MinimaClient.NETCLIENT_SENDTXPOW).addObject("txpow", txpow);
 				client.PostMessage(tx);
+				getNetworkHandler().getPeerMetrics(client).messageOut("txpow", txpow.getSizeinBytes());
 			}
 		
 		}else if(zMessage.isMessageType(CONSENSUS_NET_PING)) {
@@ -552,6 +769,7 @@ public class ConsensusNet extends ConsensusProcessor {
 				//Get the NetClient...
 				MinimaClient client = (MinimaClient) zMessage.getObject("netclient");
 				txpownet.addObject("netclient", client);
+				txpownet.addBoolean("repost", true);
 			}
 			
 			if(txpow.getSizeinBytes() > MinimaReader.MAX_TXPOW) {
@@ -575,11 +793,20 @@ public class ConsensusNet extends ConsensusProcessor {
 			//The TxPoW
 			TxPoW txpow = (TxPoW)zMessage.getObject("txpow");
 		
+			//Do we have it.. now check DB - hmmm..
+			boolean duplicate = getMainDB().getTxPOW(txpow.getTxPowID()) != null;
+			
+			//The peer that sent it has it..
+			if(zMessage.exists("netclient")) {
+				MinimaClient client = (MinimaClient) zMessage.getObject("netclient");
+				getNetworkHandler().addPeerKnows(client, txpow.getTxPowID());
+				getNetworkHandler().getPeerMetrics(client).txpowIn(duplicate);
+			}
+			
 			//DEBUG logs..
 			//MinimaLogger.log("TXPOW RECEIVED "+txpow.getBlockNumber()+" "+txpow.getTxPowID());
 			
-			//Do we have it.. now check DB - hmmm..
-			if(getMainDB().getTxPOW(txpow.getTxPowID()) != null) {
+			if(duplicate) {
 				MinimaLogger.log("NET Transaction we already have.. "+txpow.getBlockNumber()+" "+txpow.getTxPowID());
 				return;
 			}
@@ -587,6 +814,7 @@ public class ConsensusNet extends ConsensusProcessor {
 			//Is it even a valid TxPOW.. not enough POW ? - FIRST CHECK
 			if(!txpow.isBlock() && !txpow.isTransaction()) {
 				MinimaLogger.log("ERROR NET FAKE - not transaction not block : "+txpow.getBlockNumber()+" "+txpow);
+				peerInvalid(zMessage);
 				return;
 			}
 			
@@ -594,6 +822,7 @@ public class ConsensusNet extends ConsensusProcessor {
 			if(txpow.isTransaction()) {
 				if(txpow.getTxnDifficulty().isMore(TxPoWMiner.BASE_TXN)) {
 					MinimaLogger.log("ERROR NET - Transaction not enough TxPOW: "+txpow.getTxnDifficulty()+" "+txpow);
+					peerInvalid(zMessage);
 					return;
 				}
 			}
@@ -601,14 +830,23 @@ public class ConsensusNet extends ConsensusProcessor {
 			//Does it have a body.. SHOULD NOT HAPPEN as only complete post cascade txpow messages can be requested
 			if(!txpow.hasBody()) {
 				MinimaLogger.log("ERROR NET NO TxBODY for txpow "+txpow.getBlockNumber()+" "+txpow.getTxPowID());
+				peerInvalid(zMessage);
 				return;
 			}
 			
-			//Check Header and Body Agree..
-			MiniData bodyhash = Crypto.getInstance().hashObject(txpow.getTxBody());
+			//Check Header and Body Agree.. uses the sealed data
+			MiniData bodyhash = txpow.getCalculatedBodyHash();
 			if(!txpow.getTxHeader().getBodyHash().isEqual(bodyhash)) {
 				MinimaLogger.log("ERROR NET TxHeader and TxBody Mismatch! "
 							+txpow.getBlockNumber()+" "+txpow.getTxPowID()+" "+txpow.getTxHeader().getBodyHash().to0xString()+" "+bodyhash.to0xString()); 
+				peerInvalid(zMessage);
+				return;
+			}
+			
+			//Could the body be decoded..
+			if(!txpow.isBodyValid()) {
+				MinimaLogger.log("ERROR NET Invalid TxBody for txpow "+txpow.getBlockNumber()+" "+txpow.getTxPowID());
+				peerInvalid(zMessage);
 				return;
 			}
 			
@@ -616,6 +854,7 @@ public class ConsensusNet extends ConsensusProcessor {
 			boolean sigsok = TxPoWChecker.checkSigs(txpow);
 			if(!sigsok) {
 				MinimaLogger.log("ERROR NET Invalid Signatures with TXPOW : "+txpow.getBlockNumber()+" "+txpow.getTxPowID()); 
+				peerInvalid(zMessage);
 				return;
 			}
 
@@ -695,6 +934,7 @@ public class ConsensusNet extends ConsensusProcessor {
 				}else {
 					//Not requested invalid transaction..
 					MinimaLogger.log("ERROR NET Invalid TXPOW (UN-Requested..) : "+txpow.getBlockNumber()+" "+txpow.getTxPowID()); 
+					peerInvalid(zMessage);
 					return;	
 				}
 			}
@@ -719,17 +959,41 @@ public class ConsensusNet extends ConsensusProcessor {
 				sendTxPowRequest(zMessage, parentID);
 			}
 			
-			//And now check the Txn list..
+			//And now check the Txn list.. most will be in the mempool already - only the gaps are batched
 			if(txpow.isBlock()) {
+				ArrayList<MiniData> missing = new ArrayList<>();
 				ArrayList<MiniData> txns = txpow.getBlockTransactions();
 				for(MiniData txn : txns) {
 					if(getMainDB().getTxPOW(txn) == null ) {
-						MinimaLogger.log("Request missing TxPoW in block "+txpow.getBlockNumber()+" "+txn);
-						sendTxPowRequest(zMessage, txn);
+						missing.add(txn);
 					}
 				}
+				
+				//Ask for all the gaps at once
+				if(missing.size() > 0) {
+					MinimaLogger.log("Request "+missing.size()+" / "+txns.size()+" missing TxPoW in block "+txpow.getBlockNumber());
+					sendTxPowListRequest(zMessage, missing);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * All the peers Initial Sync chunks can be sent to - the one that sent this message at least. Best scoring first.
+	 */
+	private ArrayList<MinimaClient> getSyncClients(Message zMessage){
+		ArrayList<MinimaClient> clients = getNetworkHandler().getNetClients();
+		if(zMessage.exists("netclient")) {
+			MinimaClient client = (MinimaClient) zMessage.getObject("netclient");
+			if(!clients.contains(client)) {
+				clients.add(client);
 			}
 		}
+		
+		//Best first
+		getNetworkHandler().rankPeers(clients);
+		
+		return clients;
 	}
 	
 	/**
@@ -756,7 +1020,7 @@ public class ConsensusNet extends ConsensusProcessor {
 		}
 		
 		//Save it..
-		Main.getMainHandler().getBackupManager().backupTxpow(txpow);
+		getConsensusHandler().getTxPoWWriter().backupTxPoW(txpow);
 		
 		//Is it a block ?
 		if(txpow.isBlock()) {
@@ -827,6 +1091,163 @@ public class ConsensusNet extends ConsensusProcessor {
 	}
 	
 	
+	/**
+	 * The peer that sent this sent something invalid
+	 */
+	private void peerInvalid(Message zMessage) {
+		if(zMessage.exists("netclient")) {
+			getNetworkHandler().getPeerMetrics((MinimaClient) zMessage.getObject("netclient")).invalidData();
+		}
+	}
+	
+	/**
+	 * Check a peer's headers and ask for the window as soon as there is a better one to ask
+	 */
+	private void processHeaders(Message zMessage, SyncPackage zHeaders) {
+		//Only when starting from nothing
+		if(getMainDB().getMainTree().getAsList().size()!=0) {
+			return;
+		}
+		
+		MinimaClient client = (MinimaClient) zMessage.getObject("netclient");
+		
+		if(mHeaderSync == null) {
+			mHeaderSync = new HeaderSync();
+			
+			//Checks the window request hasn't timed out
+			getConsensusHandler().PostTimerMessage(new TimerMessage(10000, CONSENSUS_NET_HEADERSYNC));
+		}
+		
+		if(!mHeaderSync.addOffer(client, zHeaders)) {
+			MinimaLogger.log("INVALID HEADERS RECEIVED.. ");
+			peerInvalid(zMessage);
+			
+			if(mHeaderSync.isWaitingFor(client)) {
+				mHeaderSync.failed();
+				requestHeaderWindow(zMessage);
+			}
+			return;
+		}
+		
+		//First valid headers, heavier ones, or the tip asked for moved on
+		if(mHeaderSync.shouldRequest(client)) {
+			requestHeaderWindow(zMessage);
+		}
+	}
+	
+	/**
+	 * Ask the peer with the heaviest valid headers for the window blocks. 
+	 * If no one is left ask for the complete SyncPackage.
+	 */
+	private void requestHeaderWindow(Message zMessage) {
+		ArrayList<MinimaClient> clients = getSyncClients(zMessage);
+		
+		HashNumber tip = mHeaderSync.requestBest(clients);
+		if(tip != null) {
+			MinimaLogger.log("HEADER SYNC requesting blocks up to "+tip.getNumber());
+			
+			Greeting greet = new Greeting();
+			greet.setWindowRequest(tip);
+			mHeaderSync.getRequestedClient().PostMessage(new Message(MinimaClient.NETCLIENT_GREETING).addObject("greeting", greet));
+			return;
+		}
+		
+		//Do it the old way..
+		mHeaderSync = null;
+		if(clients.size()>0) {
+			MinimaLogger.log("HEADER SYNC FAILED - requesting complete");
+			
+			Greeting greet = new Greeting();
+			greet.setNoHeaders();
+			clients.get(0).PostMessage(new Message(MinimaClient.NETCLIENT_GREETING).addObject("greeting", greet));
+		}
+	}
+	
+	/**
+	 * Roughly how big a peer message was - the TxPoW and IDs in it
+	 */
+	private static long getPayloadSize(Message zMessage) {
+		if(zMessage.exists("txpow")) {
+			return ((TxPoW)zMessage.getObject("txpow")).getSizeinBytes();
+		}else if(zMessage.exists("txpowlist")) {
+			return getListSize((TxPoWList)zMessage.getObject("txpowlist"));
+		}else if(zMessage.exists("txpowidlist")) {
+			return getIDListSize((TxPoWIDList)zMessage.getObject("txpowidlist"));
+		}else if(zMessage.exists("txpowid")) {
+			return ((MiniData)zMessage.getObject("txpowid")).getLength();
+		}
+		return 0;
+	}
+	
+	private static long getListSize(TxPoWList zList) {
+		long size = 0;
+		for(TxPoW txp : zList.getList()) {
+			size += txp.getSizeinBytes();
+		}
+		return size;
+	}
+	
+	private static long getIDListSize(TxPoWIDList zList) {
+		long size = 0;
+		for(MiniData txpid : zList.getList()) {
+			size += txpid.getLength();
+		}
+		return size;
+	}
+	
+	/**
+	 * Request a list of missing TxPOW from the same peer in one message.
+	 * 
+	 * This only batches the gaps in a block. It is not compact block relay - the block TxPoW is 
+	 * still sent in full with its complete TxPoWID list, and there are no short IDs.
+	 * 
+	 * During the Initial Sync the TxPoWIDList replies are used for the chunks - so ask one at a time.
+	 * 
+	 * @param zFromMessage
+	 * @param zTxPoWIDs
+	 */
+	private void sendTxPowListRequest(Message zFromMessage, ArrayList<MiniData> zTxPoWIDs) {
+		if(mSyncChunks != null || zTxPoWIDs.size() == 1) {
+			for(MiniData txpowid : zTxPoWIDs) {
+				sendTxPowRequest(zFromMessage, txpowid);
+			}
+			return;
+		}
+		
+		//Get the NetClient...
+		MinimaClient client = (MinimaClient) zFromMessage.getObject("netclient");
+		
+		//Ask the best peer that has each one
+		Hashtable<MinimaClient, TxPoWIDList> requests = new Hashtable<>();
+		for(MiniData txpowid : zTxPoWIDs) {
+			String data = txpowid.to0xString();
+			
+			//Sent for recently - this will delay and try again
+			if(mDataTimer.checkForData(data, 5000)) {
+				sendTxPowRequest(zFromMessage, txpowid);
+				continue;
+			}
+			
+			MinimaClient best = getNetworkHandler().getBestPeer(txpowid, client);
+			TxPoWIDList txpidlist = requests.get(best);
+			if(txpidlist == null) {
+				txpidlist = new TxPoWIDList();
+				requests.put(best, txpidlist);
+			}
+			
+			getNetworkHandler().addRequestedTxPow(data, best);
+			txpidlist.addTxPowID(txpowid);
+		}
+		
+		Enumeration<MinimaClient> peers = requests.keys();
+		while(peers.hasMoreElements()) {
+			MinimaClient peer 		= peers.nextElement();
+			TxPoWIDList txpidlist 	= requests.get(peer);
+			peer.PostMessage(new Message(MinimaClient.NETCLIENT_TXPOWIDLIST).addObject("txpowidlist", txpidlist));
+			getNetworkHandler().getPeerMetrics(peer).messageOut("txpowidlist", getIDListSize(txpidlist));
+		}
+	}
+	
 	/**
 	 * Send a Request for a Missing TxPOW
 	 * Check if has been done recently and reposts with a 5 second delay if it has
@@ -858,12 +1279,19 @@ public class ConsensusNet extends ConsensusProcessor {
 			return;
 		}
 		
+		//The best peer that has it..
+		client = getNetworkHandler().getBestPeer(zTxPoWID, client);
+		
+		//Remember who was asked - asked again from someone else if they don't answer
+		getNetworkHandler().addRequestedTxPow(data, client);
+		
 		//Give it to the client to send on..	
 		Message req = new Message(MinimaClient.NETCLIENT_SENDTXPOWREQ);
 		req.addObject("txpowid", zTxPoWID);
 		
 		//And Post it..
 		client.PostMessage(req);
+		getNetworkHandler().getPeerMetrics(client).messageOut("txpowrequest", zTxPoWID.getLength());
 	}
 	
 	/**
@@ -30,8 +30,10 @@ import org.minima.objects.proofs.TokenProof;
 import org.minima.system.Main;
 import org.minima.system.input.InputHandler;
 import org.minima.system.network.MinimaClient;
+import org.minima.system.network.PeerMetrics;
 import org.minima.system.network.minidapps.DAPPManager;
 import org.minima.system.network.rpc.RPCClient;
+import org.minima.utils.Compressor;
 import org.minima.utils.Maths;
 import org.minima.utils.MiniFormat;
 import org.minima.utils.MinimaLogger;
@@ -673,8 +675,13 @@ public class ConsensusPrint extends ConsensusProcessor {
 			//Add it to all ball
 			allbal.put("balance",totbal);
 			
-			//Store for later
-			mOldBalanceJSON = allbal;
+			//Store for later - only the complete balance
+			if(onlyaddress.equals("")) {
+				mOldBalanceJSON = allbal;
+				
+				//And let the readers see the new state
+				getConsensusHandler().publishSnapshot(mOldBalanceJSON);
+			}
 					
 			//All good
 			InputHandler.endResponse(zMessage, true, "");
@@ -804,6 +811,9 @@ public class ConsensusPrint extends ConsensusProcessor {
 			//Is it a clear..
 			if(zMessage.exists("clear")) {
 				getMainDB().getUserDB().clearHistory();
+				
+				//The readers can't see it anymore
+				getConsensusHandler().publishSnapshot(mOldBalanceJSON);
 			}
 			
 			boolean useaddress = false;
@@ -1030,14 +1040,35 @@ public class ConsensusPrint extends ConsensusProcessor {
 			network.put("connections", nets.size());
 			
 			JSONArray netarr = new JSONArray();
+			long txpowin = 0;
+			long dups    = 0;
 			if(nets.size()>0) {
 				for(MinimaClient net : nets) {
-					netarr.add(net.toJSON());
+					JSONObject netjson = net.toJSON();
+					
+					//Traffic, latency and duplicates..
+					PeerMetrics metrics = getNetworkHandler().getPeerMetrics(net);
+					netjson.put("metrics", metrics.toJSON());
+					txpowin += metrics.getTxPoWIn();
+					dups    += metrics.getTxPoWDuplicate();
+					
+					netarr.add(netjson);
 				}
 				
 			}
 			network.put("network", netarr);
 			
+			//How much of what is relayed to us we already had
+			network.put("txpowin", txpowin);
+			network.put("duplicates", dups);
+			network.put("duplicaterate", String.format("%.2f", txpowin == 0 ? 0.0 : (double)dups / txpowin));
+			
+			//The TxPoW asked for and not yet received
+			network.put("requested", Main.getMainHandler().getNetworkHandler().getRequestedTxPoW().toJSON());
+			
+			//Bytes saved by compressing the big lists
+			network.put("compression", Compressor.getStatsJSON());
+			
 			//Add it to the output
 			InputHandler.endResponse(zMessage, true, "");
 		
@@ -3,8 +3,9 @@ package org.minima.system.brains;
 import org.minima.database.MinimaDB;
 import org.minima.system.Main;
 import org.minima.system.network.NetworkHandler;
+import org.minima.utils.messages.MessageHandler;
 
-public class ConsensusProcessor {
+public abstract class ConsensusProcessor implements MessageHandler {
 
 	/**
 	 * The Main Database
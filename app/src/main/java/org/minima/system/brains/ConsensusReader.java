@@ -0,0 +1,220 @@
+package org.minima.system.brains;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.minima.GlobalParams;
+import org.minima.database.userdb.java.reltxpow;
+import org.minima.objects.Address;
+import org.minima.objects.Coin;
+import org.minima.objects.base.MiniData;
+import org.minima.system.Main;
+import org.minima.system.input.InputHandler;
+import org.minima.utils.Maths;
+import org.minima.utils.MinimaLogger;
+import org.minima.utils.json.JSONArray;
+import org.minima.utils.json.JSONObject;
+import org.minima.utils.messages.Message;
+
+/**
+ * Answers the read-only ConsensusPrint queries from the latest ConsensusSnapshot on a small pool
+ * of threads - so a user asking for the status or balance doesn't wait behind block processing,
+ * and block processing doesn't wait behind them.
+ *
+ * Anything the snapshot can't answer still goes to the consensus thread.
+ *
+ * @author spartacusrex
+ */
+public class ConsensusReader {
+
+	/**
+	 * How many queries at once
+	 */
+	public static final int READER_THREADS = 2;
+
+	/**
+	 * The latest - replaced whole, never changed
+	 */
+	volatile ConsensusSnapshot mSnapshot;
+
+	ExecutorService mReaders;
+
+	public ConsensusReader() {
+		mSnapshot = null;
+		mReaders  = Executors.newFixedThreadPool(READER_THREADS, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable zRunnable) {
+				Thread thread = new Thread(zRunnable, "Consensus Reader");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	public void setSnapshot(ConsensusSnapshot zSnapshot) {
+		mSnapshot = zSnapshot;
+	}
+
+	public ConsensusSnapshot getSnapshot() {
+		return mSnapshot;
+	}
+
+	public void shutdown() {
+		mReaders.shutdownNow();
+	}
+
+	/**
+	 * Can this message be answered from the snapshot
+	 */
+	public boolean canAnswer(Message zMessage) {
+		if(mSnapshot == null) {
+			return false;
+		}
+
+		if(zMessage.isMessageType(ConsensusPrint.CONSENSUS_STATUS)) {
+			//The full status needs the DB and the files..
+			return !zMessage.getBoolean("full");
+
+		}else if(zMessage.isMessageType(ConsensusPrint.CONSENSUS_TOPBLOCK)) {
+			return true;
+
+		}else if(zMessage.isMessageType(ConsensusPrint.CONSENSUS_BALANCE)) {
+			//A hard balance updates the listeners.. and single addresses aren't stored
+			return !zMessage.exists("hard") && !zMessage.exists("address") && mSnapshot.getBalance() != null;
+
+		}else if(zMessage.isMessageType(ConsensusPrint.CONSENSUS_HISTORY)) {
+			//Clearing it changes the UserDB
+			return !zMessage.exists("clear");
+		}
+
+		return false;
+	}
+
+	/**
+	 * Answer it on one of the reader threads
+	 */
+	public void answer(final Message zMessage) {
+		final ConsensusSnapshot snap = mSnapshot;
+
+		mReaders.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					processMessage(zMessage, snap);
+				}catch(Exception exc) {
+					MinimaLogger.log("ERROR Consensus Reader "+zMessage.getMessageType()+" "+exc);
+					InputHandler.endResponse(zMessage, false, exc.toString());
+				}
+			}
+		});
+	}
+
+	private void processMessage(Message zMessage, ConsensusSnapshot zSnap) throws Exception {
+
+		if(zMessage.isMessageType(ConsensusPrint.CONSENSUS_STATUS)) {
+			//Main Handler
+			Main main = Main.getMainHandler();
+
+			//Get the response JSON
+			JSONObject status = InputHandler.getResponseJSON(zMessage);
+
+			//Version
+			status.put("version", GlobalParams.MINIMA_VERSION);
+			status.put("time", new Date().toString());
+
+			//Up time..
+			long timediff     = System.currentTimeMillis() - main.getNodeStartTime();
+			String uptime     = Maths.ConvertMilliToTime(timediff);
+
+			status.put("uptime", uptime);
+			status.put("conf", main.getBackupManager().getRootFolder().getAbsolutePath());
+			status.put("host", main.getNetworkHandler().getBaseHost());
+			status.put("minimaport", main.getNetworkHandler().getMinimaServer().getPort());
+			status.put("rpcport", main.getNetworkHandler().getRPCPort());
+			status.put("websocketport", main.getNetworkHandler().getWSPort());
+			status.put("minidappserver", main.getNetworkHandler().getMiniDAPPServerPort());
+
+			status.put("automine", main.getMiner().isAutoMining());
+
+			status.put("root", zSnap.getRootID());
+			status.put("tip", zSnap.getTip().getTxPowID().to0xString());
+			status.put("total", zSnap.getTip().getMMRTotal().toString());
+
+			status.put("lastblock", zSnap.getTip().getBlockNumber().toString());
+			status.put("lasttime", new Date(zSnap.getTip().getTimeMilli().getAsLong()).toString());
+			status.put("cascade", zSnap.getCascade());
+
+			status.put("difficulty", zSnap.getTip().getBlockDifficulty().to0xString());
+
+			status.put("coindb", zSnap.getCoinDBSize());
+			status.put("txpowdb", zSnap.getTxPoWDBSize());
+
+			status.put("mempooltxn", zSnap.getMempoolTxn());
+			status.put("mempoolcoins", zSnap.getMempoolCoins());
+
+			status.put("chainspeed", zSnap.getChainSpeed());
+			status.put("chainlength", zSnap.getChainLength());
+			status.put("chainweight", zSnap.getRootWeight());
+
+			//Add the network connections
+			status.put("connections", main.getNetworkHandler().getNetClients().size());
+
+			InputHandler.endResponse(zMessage, true, "");
+
+		}else if(zMessage.isMessageType(ConsensusPrint.CONSENSUS_TOPBLOCK)) {
+			JSONObject resp = InputHandler.getResponseJSON(zMessage);
+			resp.put("txpow", zSnap.getTip());
+			InputHandler.endResponse(zMessage, true, "");
+
+		}else if(zMessage.isMessageType(ConsensusPrint.CONSENSUS_BALANCE)) {
+			InputHandler.setFullResponse(zMessage, zSnap.getBalance());
+			InputHandler.endResponse(zMessage, true, "");
+
+		}else if(zMessage.isMessageType(ConsensusPrint.CONSENSUS_HISTORY)) {
+			MiniData addr = null;
+			if(zMessage.exists("address")) {
+				String address = zMessage.getString("address");
+				if(address.startsWith("0x")) {
+					//It's a regular HASH address
+					addr = new MiniData(address);
+				}else if(address.startsWith("Mx")) {
+					//It's a Minima Address!
+					addr = Address.convertMinimaAddress(address);
+				}
+			}
+
+			ArrayList<reltxpow> history 		= zSnap.getHistory();
+			ArrayList<JSONObject> historyjson 	= zSnap.getHistoryJSON();
+
+			JSONArray totbal = new JSONArray();
+			int len = history.size();
+			for(int i=0;i<len;i++) {
+				if(addr != null) {
+					boolean found = false;
+					ArrayList<Coin> inputs = history.get(i).getTxPOW().getTransaction().getAllInputs();
+					for(Coin in : inputs) {
+						if(in.getAddress().isEqual(addr)) {
+							found = true;
+							break;
+						}
+					}
+
+					if(!found) {
+						continue;
+					}
+				}
+
+				totbal.add(historyjson.get(i));
+			}
+
+			//And add to the final response
+			InputHandler.getResponseJSON(zMessage).put("history", totbal);
+
+			//All good
+			InputHandler.endResponse(zMessage, true, "");
+		}
+	}
+}
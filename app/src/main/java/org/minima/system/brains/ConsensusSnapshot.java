@@ -0,0 +1,208 @@
+package org.minima.system.brains;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+import org.minima.database.MinimaDB;
+import org.minima.database.txpowtree.BlockTree;
+import org.minima.database.txpowtree.BlockTreeNode;
+import org.minima.database.userdb.java.reltxpow;
+import org.minima.objects.TxPoW;
+import org.minima.objects.base.MiniData;
+import org.minima.utils.json.JSONObject;
+
+/**
+ * The state of the MinimaDB at one point - taken on the consensus thread after each new balance.
+ *
+ * Never changes once made, so the read-only queries can be answered from it on any thread
+ * without waiting for the consensus handler. A new one replaces it when the chain moves on.
+ *
+ * Made for every block so it is built from the last one - only what has changed is redone.
+ * The sizes come from counters, not copies of the tables.
+ *
+ * @author spartacusrex
+ */
+public class ConsensusSnapshot {
+
+	/**
+	 * When it was taken
+	 */
+	long mTime;
+
+	/**
+	 * The chain - the tip is a copy, not the TxPoW in the tree
+	 */
+	TxPoW mTip;
+	MiniData mTipID;
+	String mRootID;
+	String mRootWeight;
+	String mCascade;
+	String mChainSpeed;
+	int mChainLength;
+
+	/**
+	 * The cascade node and how many blocks from it to the root - only counted when it changes
+	 */
+	MiniData mCascadeID;
+	int mCascadeLength;
+
+	/**
+	 * The DB sizes
+	 */
+	int mCoinDBSize;
+	int mTxPoWDBSize;
+	int mMempoolTxn;
+	int mMempoolCoins;
+
+	/**
+	 * The complete balance - for all addresses
+	 */
+	JSONObject mBalance;
+
+	/**
+	 * The history and its JSON - made here as the token names come from the UserDB
+	 */
+	ArrayList<reltxpow> mHistory;
+	ArrayList<JSONObject> mHistoryJSON;
+
+	private ConsensusSnapshot() {}
+
+	public long getTime() {
+		return mTime;
+	}
+
+	public TxPoW getTip() {
+		return mTip;
+	}
+
+	public String getRootID() {
+		return mRootID;
+	}
+
+	public String getRootWeight() {
+		return mRootWeight;
+	}
+
+	public String getCascade() {
+		return mCascade;
+	}
+
+	public String getChainSpeed() {
+		return mChainSpeed;
+	}
+
+	public int getChainLength() {
+		return mChainLength;
+	}
+
+	public int getCoinDBSize() {
+		return mCoinDBSize;
+	}
+
+	public int getTxPoWDBSize() {
+		return mTxPoWDBSize;
+	}
+
+	public int getMempoolTxn() {
+		return mMempoolTxn;
+	}
+
+	public int getMempoolCoins() {
+		return mMempoolCoins;
+	}
+
+	public JSONObject getBalance() {
+		return mBalance;
+	}
+
+	public ArrayList<reltxpow> getHistory(){
+		return mHistory;
+	}
+
+	public ArrayList<JSONObject> getHistoryJSON(){
+		return mHistoryJSON;
+	}
+
+	/**
+	 * MUST be called on the consensus thread
+	 *
+	 * @param zPrevious The last one made - can be null
+	 * @return null if there is no chain yet
+	 */
+	public static ConsensusSnapshot create(MinimaDB zDB, JSONObject zBalance, ConsensusSnapshot zPrevious) throws IOException {
+		BlockTree tree = zDB.getMainTree();
+		if(tree.getChainRoot() == null) {
+			return null;
+		}
+
+		BlockTreeNode tip  	= tree.getChainTip();
+		BlockTreeNode root 	= tree.getChainRoot();
+		BlockTreeNode casc 	= tree.getCascadeNode();
+
+		ConsensusSnapshot snap = new ConsensusSnapshot();
+		snap.mTime 			= System.currentTimeMillis();
+
+		//A copy of the tip the readers can use - only if it has changed
+		snap.mTipID = tip.getTxPowID();
+		if(zPrevious != null && zPrevious.mTipID.isEqual(snap.mTipID)) {
+			snap.mTip = zPrevious.mTip;
+		}else {
+			snap.mTip = TxPoWWriter.readTxPoWData(TxPoWWriter.getTxPoWData(tip.getTxPow()));
+		}
+
+		snap.mRootID 		= root.getTxPowID().to0xString();
+		snap.mRootWeight 	= root.getTotalWeight().toString();
+		snap.mCascade 		= casc.getTxPow().getBlockNumber().toString();
+		snap.mChainSpeed 	= tree.getChainSpeed().toString();
+
+		//Every block from the tip down to the cascade is there - only count the cascade part when it changes
+		snap.mCascadeID = casc.getTxPowID();
+		if(zPrevious != null && zPrevious.mCascadeID.isEqual(snap.mCascadeID)) {
+			snap.mCascadeLength = zPrevious.mCascadeLength;
+		}else {
+			snap.mCascadeLength = 0;
+			BlockTreeNode node = casc;
+			while(node != null) {
+				snap.mCascadeLength++;
+				node = node.getParent();
+			}
+		}
+		snap.mChainLength = tip.getBlockNumber().sub(casc.getBlockNumber()).getAsInt() + snap.mCascadeLength;
+
+		snap.mCoinDBSize 	= zDB.getCoinDB().getSize();
+		snap.mTxPoWDBSize 	= zDB.getTxPowDB().getSize();
+		snap.mMempoolTxn 	= zDB.getTxPowDB().getMemPool().getSize();
+		snap.mMempoolCoins 	= zDB.getTxPowDB().getMemPool().getTotalInputs();
+
+		snap.mBalance 		= zBalance;
+
+		//The history only grows - unless cleared. Keep what the last one had.
+		ArrayList<reltxpow> history = zDB.getUserDB().getHistory();
+		int len 	= history.size();
+		int keep 	= 0;
+		if(zPrevious != null) {
+			keep = zPrevious.mHistory.size();
+			if(keep > len || (keep > 0 && zPrevious.mHistory.get(keep-1) != history.get(keep-1))) {
+				//Cleared..
+				keep = 0;
+			}
+		}
+
+		if(zPrevious != null && keep == len && keep == zPrevious.mHistory.size()) {
+			//No change - they are never changed once made
+			snap.mHistory 		= zPrevious.mHistory;
+			snap.mHistoryJSON 	= zPrevious.mHistoryJSON;
+		}else {
+			snap.mHistory 		= new ArrayList<>(history);
+			snap.mHistoryJSON 	= new ArrayList<>(len);
+			if(keep > 0) {
+				snap.mHistoryJSON.addAll(zPrevious.mHistoryJSON);
+			}
+			for(int i=keep;i<len;i++) {
+				snap.mHistoryJSON.add(history.get(i).toJSON(zDB));
+			}
+		}
+
+		return snap;
+	}
+}
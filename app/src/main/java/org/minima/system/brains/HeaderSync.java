@@ -0,0 +1,307 @@
+package org.minima.system.brains;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+
+import org.minima.GlobalParams;
+import org.minima.objects.TxPoW;
+import org.minima.objects.base.MiniData;
+import org.minima.objects.greet.HashNumber;
+import org.minima.objects.greet.SyncPackage;
+import org.minima.objects.greet.SyncPacket;
+import org.minima.system.network.MinimaClient;
+
+/**
+ * Header first Initial Sync.
+ *
+ * Each peer sends just the headers of its chain - the cascade super blocks and the
+ * uncascaded window. These are PoW checked and linked. The window - the bodies and MMR 
+ * sets - is asked for as soon as the first valid headers arrive, and asked for again from
+ * another peer only if it sends heavier headers before the window comes. The window is 
+ * checked against the headers already verified.
+ *
+ * @author spartacusrex
+ */
+public class HeaderSync {
+	
+	/**
+	 * How long to wait for the window blocks
+	 */
+	public static final long WINDOW_TIMEOUT = 120000;
+	
+	private class Offer {
+		MinimaClient mClient;
+		SyncPackage mHeaders;
+		BigInteger mWeight;
+	}
+	
+	/**
+	 * The valid header chains sent to us
+	 */
+	ArrayList<Offer> mOffers;
+	
+	/**
+	 * The one the window has been asked for
+	 */
+	Offer mRequested;
+	long mRequestTime;
+	
+	/**
+	 * Every peer the window has been asked from - so a late reply is not taken as a complete package
+	 */
+	ArrayList<MinimaClient> mAsked;
+	
+	public HeaderSync() {
+		mOffers 		= new ArrayList<>();
+		mRequested 		= null;
+		mRequestTime 	= 0;
+		mAsked 			= new ArrayList<>();
+	}
+	
+	/**
+	 * Headers only - the tip of a real SyncPackage always has its body
+	 */
+	public static boolean isHeaderPackage(SyncPackage zPackage) {
+		ArrayList<SyncPacket> packets = zPackage.getAllNodes();
+		if(packets.size() == 0) {
+			return false;
+		}
+		
+		return !packets.get(packets.size()-1).getTxPOW().hasBody();
+	}
+	
+	/**
+	 * Are these real blocks that link up from the first to the tip
+	 */
+	public static boolean checkHeaders(SyncPackage zHeaders) {
+		ArrayList<SyncPacket> packets = zHeaders.getAllNodes();
+		if(packets.size() == 0) {
+			return false;
+		}
+		
+		boolean window 	= false;
+		TxPoW prev 		= null;
+		for(SyncPacket spack : packets) {
+			TxPoW txpow = spack.getTxPOW();
+			
+			//Just the header - and enough PoW to be a block
+			if(txpow.hasBody() || spack.getMMRSet() != null || !txpow.isBlock()) {
+				return false;
+			}
+			
+			//All the cascade and then the window
+			if(spack.isCascade()) {
+				if(window) {
+					return false;
+				}
+			}else if(!window) {
+				if(!txpow.getBlockNumber().isEqual(zHeaders.getCascadeNode())) {
+					return false;
+				}
+				window = true;
+			}
+			
+			if(prev != null) {
+				if(!txpow.getBlockNumber().isMore(prev.getBlockNumber())) {
+					return false;
+				}
+				
+				if(window && !spack.isCascade() && !txpow.getBlockNumber().isEqual(zHeaders.getCascadeNode())) {
+					//Every block in the window
+					if(!txpow.getBlockNumber().isEqual(prev.getBlockNumber().increment())
+							|| !txpow.getParentID().isEqual(prev.getTxPowID())) {
+						return false;
+					}
+				}else if(!isSuperParent(txpow, prev.getTxPowID())) {
+					//A cascade block is the super parent at the level it was kept
+					return false;
+				}
+			}
+			
+			prev = txpow;
+		}
+		
+		return window;
+	}
+	
+	private static boolean isSuperParent(TxPoW zTxPoW, MiniData zParent) {
+		for(int i=0;i<GlobalParams.MINIMA_CASCADE_LEVELS;i++) {
+			if(zTxPoW.getSuperParent(i).isEqual(zParent)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Check and keep a peer's headers
+	 *
+	 * @return false if invalid
+	 */
+	public boolean addOffer(MinimaClient zClient, SyncPackage zHeaders) {
+		if(!checkHeaders(zHeaders)) {
+			return false;
+		}
+		
+		//Only the latest from each peer
+		removeOffer(zClient);
+		
+		Offer offer 	= new Offer();
+		offer.mClient 	= zClient;
+		offer.mHeaders 	= zHeaders;
+		offer.mWeight 	= zHeaders.calculateWeight();
+		mOffers.add(offer);
+		
+		return true;
+	}
+	
+	private void removeOffer(MinimaClient zClient) {
+		ArrayList<Offer> offers = new ArrayList<>(mOffers);
+		for(Offer offer : offers) {
+			if(offer.mClient == zClient) {
+				mOffers.remove(offer);
+			}
+		}
+	}
+	
+	public boolean hasOffers() {
+		return mOffers.size() > 0;
+	}
+	
+	/**
+	 * Should the window be asked for again now this peer has sent headers. Yes if nothing 
+	 * is asked for yet, if this is the peer asked (its tip moved on) or if its headers are 
+	 * heavier than the ones asked for.
+	 */
+	public boolean shouldRequest(MinimaClient zClient) {
+		if(mRequested == null || mRequested.mClient == zClient) {
+			return true;
+		}
+		
+		for(Offer offer : mOffers) {
+			if(offer.mClient == zClient && offer.mWeight.compareTo(mRequested.mWeight) > 0) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Ask the peer with the heaviest headers for the window. The clients are best
+	 * first so that wins a tie.
+	 *
+	 * @return The tip to ask for - null if no connected peer has sent headers
+	 */
+	public HashNumber requestBest(ArrayList<MinimaClient> zClients) {
+		Offer best = null;
+		for(MinimaClient client : zClients) {
+			for(Offer offer : mOffers) {
+				if(offer.mClient == client) {
+					if(best == null || offer.mWeight.compareTo(best.mWeight) > 0) {
+						best = offer;
+					}
+				}
+			}
+		}
+		
+		mRequested = best;
+		if(best == null) {
+			return null;
+		}
+		
+		mRequestTime = System.currentTimeMillis();
+		if(!mAsked.contains(best.mClient)) {
+			mAsked.add(best.mClient);
+		}
+		
+		ArrayList<SyncPacket> packets = best.mHeaders.getAllNodes();
+		TxPoW tip = packets.get(packets.size()-1).getTxPOW();
+		return new HashNumber(tip.getTxPowID(), tip.getBlockNumber());
+	}
+	
+	public MinimaClient getRequestedClient() {
+		if(mRequested == null) {
+			return null;
+		}
+		return mRequested.mClient;
+	}
+	
+	public boolean isRequested() {
+		return mRequested != null;
+	}
+	
+	public boolean isWaitingFor(MinimaClient zClient) {
+		return mRequested != null && mRequested.mClient == zClient;
+	}
+	
+	public boolean wasAsked(MinimaClient zClient) {
+		return mAsked.contains(zClient);
+	}
+	
+	public boolean hasTimedOut() {
+		return mRequested != null && System.currentTimeMillis() - mRequestTime > WINDOW_TIMEOUT;
+	}
+	
+	/**
+	 * The requested peer didn't send the window - don't use it again
+	 */
+	public void failed() {
+		if(mRequested != null) {
+			mOffers.remove(mRequested);
+			mRequested = null;
+		}
+	}
+	
+	/**
+	 * Check the window blocks are the ones in the headers
+	 *
+	 * @return The cascade headers and the window together - null if they don't match
+	 */
+	public SyncPackage checkWindow(SyncPackage zWindow) {
+		if(mRequested == null) {
+			return null;
+		}
+		
+		//The verified headers
+		ArrayList<SyncPacket> cascade = new ArrayList<>();
+		ArrayList<SyncPacket> headers = new ArrayList<>();
+		for(SyncPacket spack : mRequested.mHeaders.getAllNodes()) {
+			if(spack.isCascade()) {
+				cascade.add(spack);
+			}else {
+				headers.add(spack);
+			}
+		}
+		
+		ArrayList<SyncPacket> window = zWindow.getAllNodes();
+		if(window.size() != headers.size()) {
+			return null;
+		}
+		
+		int len = window.size();
+		for(int i=0;i<len;i++) {
+			SyncPacket spack 	= window.get(i);
+			TxPoW txpow 		= spack.getTxPOW();
+			
+			//Same block - so the PoW is already checked
+			if(!txpow.getTxPowID().isEqual(headers.get(i).getTxPOW().getTxPowID())) {
+				return null;
+			}
+			
+			//And the body and MMR that go with it
+			if(spack.isCascade() || spack.getMMRSet() == null || !txpow.hasBody()
+					|| !txpow.getTxHeader().getBodyHash().isEqual(txpow.getCalculatedBodyHash())) {
+				return null;
+			}
+		}
+		
+		//All of it..
+		SyncPackage sp = new SyncPackage();
+		sp.setCascadeNode(mRequested.mHeaders.getCascadeNode());
+		sp.getAllNodes().addAll(cascade);
+		sp.getAllNodes().addAll(window);
+		
+		return sp;
+	}
+}
@@ -0,0 +1,306 @@
+package org.minima.system.brains;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Hashtable;
+
+import org.minima.objects.base.MiniData;
+import org.minima.objects.greet.TxPoWIDList;
+import org.minima.system.network.MinimaClient;
+import org.minima.utils.MinimaLogger;
+import org.minima.utils.messages.Message;
+
+/**
+ * The TxPoW requested in chunks after the Initial Sync.
+ *
+ * Chunks are spread across all the connected peers, a few at a time each.
+ * A reply is matched to the chunk sent to that peer that asked for the TxPoW in it - other
+ * TxPoWList replies from the same peer are not counted. Anything it didn't send, or anything
+ * sent to a peer that has gone or timed out, is put back and asked for again from someone else.
+ *
+ * @author spartacusrex
+ */
+public class InitialSyncChunks {
+
+	/**
+	 * Max TxPoWIDs per request
+	 */
+	public static final int CHUNK_SIZE 			= 200;
+
+	/**
+	 * How many chunks a peer can be working on at once
+	 */
+	public static final int MAX_PEER_CHUNKS 	= 4;
+
+	/**
+	 * How long to wait for a reply before asking someone else
+	 */
+	public static final long CHUNK_TIMEOUT 		= 60000;
+
+	/**
+	 * How many times to ask for the same TxPoW
+	 */
+	public static final int MAX_ATTEMPTS 		= 5;
+
+	private class Chunk {
+		ArrayList<MiniData> mTxPoWIDs = new ArrayList<>();
+		HashSet<String> mIDs 	= new HashSet<>();
+		MinimaClient mClient 	= null;
+		MinimaClient mLastClient= null;
+		long mSentTime 			= 0;
+		int mAttempts 			= 0;
+	}
+
+	/**
+	 * Every TxPoWID ever asked for - so nothing is asked for twice
+	 */
+	HashSet<String> mAllRequested;
+
+	/**
+	 * The TxPoWIDs not yet received
+	 */
+	HashSet<String> mMissing;
+
+	/**
+	 * Chunks waiting to be sent
+	 */
+	ArrayList<Chunk> mWaiting;
+
+	/**
+	 * Chunks sent and waiting for a reply - in the order sent
+	 */
+	ArrayList<Chunk> mSent;
+
+	/**
+	 * The chunk being filled
+	 */
+	Chunk mCurrent;
+
+	/**
+	 * Stats..
+	 */
+	int mTotal;
+	int mReceived;
+
+	public InitialSyncChunks() {
+		mAllRequested 	= new HashSet<>();
+		mMissing 		= new HashSet<>();
+		mWaiting 		= new ArrayList<>();
+		mSent 			= new ArrayList<>();
+		mCurrent 		= new Chunk();
+		mTotal 			= 0;
+		mReceived 		= 0;
+	}
+
+	/**
+	 * Add a TxPoWID to be requested
+	 * @return false if already requested
+	 */
+	public boolean addTxPoWID(MiniData zTxPoWID) {
+		String txpowid = zTxPoWID.to0xString();
+		if(!mAllRequested.add(txpowid)) {
+			return false;
+		}
+
+		mMissing.add(txpowid);
+		mTotal++;
+
+		mCurrent.mTxPoWIDs.add(zTxPoWID);
+		mCurrent.mIDs.add(txpowid);
+		if(mCurrent.mTxPoWIDs.size() >= CHUNK_SIZE) {
+			mWaiting.add(mCurrent);
+			mCurrent = new Chunk();
+		}
+
+		return true;
+	}
+
+	/**
+	 * Close the chunk being filled
+	 */
+	public void flush() {
+		if(mCurrent.mTxPoWIDs.size() > 0) {
+			mWaiting.add(mCurrent);
+			mCurrent = new Chunk();
+		}
+	}
+
+	/**
+	 * Was this asked for and not yet received
+	 */
+	public boolean isMissing(MiniData zTxPoWID) {
+		return mMissing.contains(zTxPoWID.to0xString());
+	}
+
+	/**
+	 * A requested TxPoW has arrived
+	 */
+	public void received(MiniData zTxPoWID) {
+		if(mMissing.remove(zTxPoWID.to0xString())) {
+			mReceived++;
+		}
+	}
+
+	/**
+	 * A peer has replied - that finishes the chunk sent to it that asked for these TxPoW.
+	 * Anything it didn't have goes back in the queue. An empty reply can't be matched so
+	 * that chunk is left to time out.
+	 *
+	 * @param zTxPoWIDs The TxPoW in the reply
+	 * @return How long the peer took - -1 if it was not a reply to a chunk
+	 */
+	public long replied(MinimaClient zClient, ArrayList<MiniData> zTxPoWIDs) {
+		for(Chunk chunk : mSent) {
+			if(chunk.mClient != zClient) {
+				continue;
+			}
+
+			for(MiniData txpowid : zTxPoWIDs) {
+				if(chunk.mIDs.contains(txpowid.to0xString())) {
+					mSent.remove(chunk);
+					requeue(chunk);
+					return System.currentTimeMillis() - chunk.mSentTime;
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Put back anything still missing in this chunk
+	 */
+	private void requeue(Chunk zChunk) {
+		Chunk retry 		= new Chunk();
+		retry.mLastClient 	= zChunk.mClient;
+		retry.mAttempts 	= zChunk.mAttempts + 1;
+
+		for(MiniData txpowid : zChunk.mTxPoWIDs) {
+			if(mMissing.contains(txpowid.to0xString())) {
+				retry.mTxPoWIDs.add(txpowid);
+				retry.mIDs.add(txpowid.to0xString());
+			}
+		}
+
+		//Anything left..
+		if(retry.mTxPoWIDs.size() == 0) {
+			return;
+		}
+
+		//Tried enough..
+		if(retry.mAttempts >= MAX_ATTEMPTS) {
+			MinimaLogger.log("Initial Sync giving up on "+retry.mTxPoWIDs.size()+" TxPoW after "+retry.mAttempts+" attempts");
+			for(MiniData txpowid : retry.mTxPoWIDs) {
+				mMissing.remove(txpowid.to0xString());
+			}
+			return;
+		}
+
+		//Ask again first
+		mWaiting.add(0, retry);
+	}
+
+	/**
+	 * Requeue the chunks sent to peers that have gone or not replied in time
+	 *
+	 * @return The peers still connected that didn't reply in time
+	 */
+	public ArrayList<MinimaClient> checkTimeouts(ArrayList<MinimaClient> zClients) {
+		ArrayList<MinimaClient> slow = new ArrayList<>();
+		long timenow = System.currentTimeMillis();
+
+		ArrayList<Chunk> sent = new ArrayList<>(mSent);
+		for(Chunk chunk : sent) {
+			boolean connected = zClients.contains(chunk.mClient);
+			if(!connected || timenow - chunk.mSentTime > CHUNK_TIMEOUT) {
+				mSent.remove(chunk);
+				requeue(chunk);
+
+				if(connected) {
+					slow.add(chunk.mClient);
+				}
+			}
+		}
+
+		return slow;
+	}
+
+	/**
+	 * Send waiting chunks to any peer with room. Prefers not to ask the same peer twice for the same chunk.
+	 * The clients are best first - of the least busy the first is used.
+	 */
+	public void dispatch(ArrayList<MinimaClient> zClients) {
+		if(zClients.size() == 0) {
+			return;
+		}
+
+		//How many each is working on
+		Hashtable<MinimaClient, Integer> load = new Hashtable<>();
+		for(MinimaClient client : zClients) {
+			load.put(client, 0);
+		}
+		for(Chunk chunk : mSent) {
+			Integer current = load.get(chunk.mClient);
+			if(current != null) {
+				load.put(chunk.mClient, current+1);
+			}
+		}
+
+		ArrayList<Chunk> waiting = new ArrayList<>(mWaiting);
+		for(Chunk chunk : waiting) {
+			//Find the least busy peer..
+			MinimaClient best = null;
+			int bestload = MAX_PEER_CHUNKS;
+			for(MinimaClient client : zClients) {
+				int clientload = load.get(client);
+
+				//Rather not the one that didn't have it
+				if(client == chunk.mLastClient && zClients.size()>1) {
+					continue;
+				}
+
+				if(clientload < bestload) {
+					best 	 = client;
+					bestload = clientload;
+				}
+			}
+
+			//All busy..
+			if(best == null) {
+				continue;
+			}
+
+			//Send it..
+			TxPoWIDList txpidlist = new TxPoWIDList();
+			for(MiniData txpowid : chunk.mTxPoWIDs) {
+				txpidlist.addTxPowID(txpowid);
+			}
+			best.PostMessage(new Message(MinimaClient.NETCLIENT_TXPOWIDLIST).addObject("txpowidlist", txpidlist));
+
+			chunk.mClient 	= best;
+			chunk.mSentTime = System.currentTimeMillis();
+			load.put(best, bestload+1);
+
+			mWaiting.remove(chunk);
+			mSent.add(chunk);
+		}
+	}
+
+	/**
+	 * Is there anything left to ask for or wait for
+	 */
+	public boolean isFinished() {
+		return mWaiting.size() == 0 && mSent.size() == 0 && mCurrent.mTxPoWIDs.size() == 0;
+	}
+
+	public int getTotal() {
+		return mTotal;
+	}
+
+	public int getReceived() {
+		return mReceived;
+	}
+
+	public int getMissing() {
+		return mMissing.size();
+	}
+}
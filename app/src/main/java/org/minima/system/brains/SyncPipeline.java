@@ -0,0 +1,211 @@
+package org.minima.system.brains;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.minima.objects.TxPoW;
+import org.minima.objects.base.MiniData;
+import org.minima.objects.greet.SyncPacket;
+import org.minima.objects.proofs.TokenProof;
+import org.minima.utils.MinimaLogger;
+
+/**
+ * Prepares the SyncPackets of a hard reset or restore ahead of time on all the cores.
+ *
+ * Decoding the bodies, pulling out the token details and loading the block transactions
+ * from disk are done in parallel for the next few packets. The caller still takes them
+ * one at a time in block order and does everything that touches the DB and MMR itself.
+ *
+ * @author spartacusrex
+ */
+public class SyncPipeline {
+
+	/**
+	 * How many packets per core to work on ahead
+	 */
+	public static final int PACKETS_AHEAD = 4;
+
+	/**
+	 * Loads the TxPoW in a block - null for none
+	 */
+	public interface TxPoWLoader {
+		public TxPoW loadTxPoW(MiniData zTxPoWID);
+	}
+
+	/**
+	 * A SyncPacket ready to be added
+	 */
+	public class PreparedPacket {
+		SyncPacket mPacket;
+		ArrayList<TxPoW> mBlockTxns 	= new ArrayList<>();
+		ArrayList<TokenProof> mTokens 	= new ArrayList<>();
+
+		public PreparedPacket(SyncPacket zPacket) {
+			mPacket = zPacket;
+		}
+
+		public SyncPacket getPacket() {
+			return mPacket;
+		}
+
+		/**
+		 * The TxPoW in the block that could be loaded
+		 */
+		public ArrayList<TxPoW> getBlockTxns(){
+			return mBlockTxns;
+		}
+
+		/**
+		 * All the tokens created or used by this TxPoW
+		 */
+		public ArrayList<TokenProof> getTokens(){
+			return mTokens;
+		}
+	}
+
+	ArrayList<SyncPacket> mPackets;
+
+	TxPoWLoader mLoader;
+
+	ExecutorService mWorkers;
+
+	ArrayList<Future<PreparedPacket>> mAhead;
+
+	int mNextSubmit;
+
+	int mMaxAhead;
+
+	public SyncPipeline(ArrayList<SyncPacket> zPackets, TxPoWLoader zLoader) {
+		mPackets 	= zPackets;
+		mLoader 	= zLoader;
+		mAhead 		= new ArrayList<>();
+		mNextSubmit = 0;
+
+		int cores 	= Runtime.getRuntime().availableProcessors();
+		mMaxAhead 	= cores * PACKETS_AHEAD;
+		mWorkers 	= Executors.newFixedThreadPool(cores, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable zRunnable) {
+				Thread thread = new Thread(zRunnable, "Sync Pipeline");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+		fill();
+	}
+
+	/**
+	 * Keep the workers busy
+	 */
+	private void fill() {
+		while(mAhead.size() < mMaxAhead && mNextSubmit < mPackets.size()) {
+			final SyncPacket spack = mPackets.get(mNextSubmit++);
+			mAhead.add(mWorkers.submit(new Callable<PreparedPacket>() {
+				@Override
+				public PreparedPacket call() throws Exception {
+					return prepare(spack);
+				}
+			}));
+		}
+	}
+
+	/**
+	 * Runs on a worker - must not touch the DB
+	 */
+	private PreparedPacket prepare(SyncPacket zPacket) {
+		PreparedPacket prep = new PreparedPacket(zPacket);
+
+		TxPoW txpow = zPacket.getTxPOW();
+
+		//Decodes the body..
+		ArrayList<MiniData> txns = txpow.getBlockTransactions();
+
+		//The tokens..
+		addTokens(txpow, prep.mTokens);
+
+		//Load the TxPoW in the block
+		if(mLoader != null) {
+			for(MiniData txn : txns) {
+				TxPoW txinblock = mLoader.loadTxPoW(txn);
+				if(txinblock != null) {
+					//Decode now rather than on the main thread
+					txinblock.isTransaction();
+					prep.mBlockTxns.add(txinblock);
+				}
+			}
+		}
+
+		return prep;
+	}
+
+	private void addTokens(TxPoW zTxPoW, ArrayList<TokenProof> zTokens) {
+		if(!zTxPoW.isTransaction()) {
+			return;
+		}
+
+		TokenProof tokp = zTxPoW.getTransaction().getTokenGenerationDetails();
+		if(tokp!=null) {
+			zTokens.add(tokp);
+		}
+
+		zTokens.addAll(zTxPoW.getWitness().getAllTokenDetails());
+	}
+
+	public boolean hasNext() {
+		return mAhead.size() > 0;
+	}
+
+	/**
+	 * The next packet in order - waits for it if not ready.
+	 * 
+	 * If the worker failed the same error is thrown here - as it would be without the pipeline. 
+	 * It is not tried again as it would only fail again.
+	 */
+	public PreparedPacket next() {
+		int index = mNextSubmit - mAhead.size();
+		Future<PreparedPacket> head = mAhead.remove(0);
+
+		PreparedPacket prep = null;
+		try {
+			prep = head.get();
+		}catch(ExecutionException exc) {
+			MinimaLogger.log("ERROR Sync Pipeline "+exc.getCause());
+			if(exc.getCause() instanceof RuntimeException) {
+				throw (RuntimeException)exc.getCause();
+			}
+			throw new RuntimeException(exc.getCause());
+		}catch(InterruptedException exc) {
+			MinimaLogger.log("Sync Pipeline interrupted");
+		}
+
+		fill();
+
+		if(prep == null) {
+			//Interrupted - do it here then..
+			prep = prepare(mPackets.get(index));
+		}
+
+		return prep;
+	}
+
+	public void shutdown() {
+		mWorkers.shutdownNow();
+	}
+
+	public static TxPoWLoader getBackupLoader(final BackupManager zBackup) {
+		return new TxPoWLoader() {
+			@Override
+			public TxPoW loadTxPoW(MiniData zTxPoWID) {
+				File txfile = zBackup.getTxpowFile(zTxPoWID);
+				return ConsensusBackup.loadTxPOW(txfile);
+			}
+		};
+	}
+}
@@ -0,0 +1,142 @@
+package org.minima.system.brains;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.minima.objects.TxPoW;
+import org.minima.objects.base.MiniData;
+import org.minima.system.Main;
+import org.minima.utils.MinimaLogger;
+import org.minima.utils.messages.Message;
+import org.minima.utils.messages.MessageProcessor;
+
+/**
+ * Writes and deletes the TxPoW backups on its own thread - so the consensus thread doesn't wait for the disk.
+ *
+ * Backups, deletes and folder wipes all go on the same queue so they happen in the order posted - a
+ * write queued before a delete can't bring the file back. The writer is given the serialized TxPoW,
+ * never the live one the consensus thread may still change.
+ *
+ * On shutdown everything already posted is done first.
+ *
+ * @author spartacusrex
+ */
+public class TxPoWWriter extends MessageProcessor {
+	
+	public static final String TXPOWWRITER_BACKUP 	= "TXPOWWRITER_BACKUP";
+	public static final String TXPOWWRITER_DELETE 	= "TXPOWWRITER_DELETE";
+	public static final String TXPOWWRITER_WIPE 	= "TXPOWWRITER_WIPE";
+	public static final String TXPOWWRITER_SHUTDOWN = "TXPOWWRITER_SHUTDOWN";
+	
+	/**
+	 * Max time to wait for the queue to be written on shutdown or a wipe
+	 */
+	public static final long SHUTDOWN_WAIT = 30000;
+	
+	CountDownLatch mStopped = new CountDownLatch(1);
+	
+	public TxPoWWriter() {
+		super("TXPOW WRITER");
+	}
+	
+	/**
+	 * Serialized now - if sealed that is just a copy of the bytes
+	 */
+	public void backupTxPoW(TxPoW zTxPoW) {
+		MiniData data = getTxPoWData(zTxPoW);
+		if(data == null) {
+			MinimaLogger.log("ERROR TxPoWWriter could not serialize "+zTxPoW.getTxPowID());
+			return;
+		}
+		
+		PostMessage(new Message(TXPOWWRITER_BACKUP).addObject("data", data));
+	}
+	
+	/**
+	 * The TxPoW as it is passed to another thread
+	 */
+	public static MiniData getTxPoWData(TxPoW zTxPoW) {
+		return MiniData.getMiniDataVersion(zTxPoW);
+	}
+	
+	/**
+	 * A copy of the TxPoW only the thread reading it uses
+	 */
+	public static TxPoW readTxPoWData(MiniData zData) throws IOException {
+		return TxPoW.ReadLazyFromData(zData.getData());
+	}
+	
+	/**
+	 * Only the header is needed to find the file
+	 */
+	public void deleteTxPoW(TxPoW zTxPoW) {
+		try {
+			PostMessage(new Message(TXPOWWRITER_DELETE).addObject("txpow", zTxPoW.getHeaderOnly()));
+		} catch (IOException e) {
+			MinimaLogger.log("ERROR TxPoWWriter delete "+zTxPoW.getTxPowID()+" "+e);
+		}
+	}
+	
+	/**
+	 * Delete a whole backup folder - after anything already queued. Waits until it's done so 
+	 * files written directly afterwards are not removed.
+	 */
+	public void wipeFolder(File zFolder) {
+		CountDownLatch done = new CountDownLatch(1);
+		PostMessage(new Message(TXPOWWRITER_WIPE).addObject("folder", zFolder).addObject("done", done));
+		
+		try {
+			if(!done.await(SHUTDOWN_WAIT, TimeUnit.MILLISECONDS)) {
+				MinimaLogger.log("TxPoWWriter wipe timed out with "+getSize()+" left");
+			}
+		} catch (InterruptedException e) {
+			MinimaLogger.log("TxPoWWriter wipe interrupted");
+		}
+	}
+	
+	/**
+	 * Stops once all the writes before it are done - and waits for that
+	 */
+	public void shutdown() {
+		PostMessage(TXPOWWRITER_SHUTDOWN);
+		
+		try {
+			if(!mStopped.await(SHUTDOWN_WAIT, TimeUnit.MILLISECONDS)) {
+				MinimaLogger.log("TxPoWWriter shutdown timed out with "+getSize()+" left");
+			}
+		} catch (InterruptedException e) {
+			MinimaLogger.log("TxPoWWriter shutdown interrupted");
+		}
+	}
+	
+	@Override
+	protected void processMessage(Message zMessage) throws Exception {
+		BackupManager backup = Main.getMainHandler().getBackupManager();
+		
+		if(zMessage.isMessageType(TXPOWWRITER_BACKUP)) {
+			MiniData data = (MiniData) zMessage.getObject("data");
+			
+			//A copy only this thread uses
+			TxPoW txpow = readTxPoWData(data);
+			backup.backupTxpow(txpow);
+			
+		}else if(zMessage.isMessageType(TXPOWWRITER_DELETE)) {
+			TxPoW txpow = (TxPoW) zMessage.getObject("txpow");
+			backup.deleteTxpow(txpow);
+			
+		}else if(zMessage.isMessageType(TXPOWWRITER_WIPE)) {
+			File folder = (File) zMessage.getObject("folder");
+			try {
+				BackupManager.safeDelete(folder);
+			}finally {
+				((CountDownLatch) zMessage.getObject("done")).countDown();
+			}
+			
+		}else if(zMessage.isMessageType(TXPOWWRITER_SHUTDOWN)) {
+			stopMessageProcessor();
+			mStopped.countDown();
+		}
+	}
+}
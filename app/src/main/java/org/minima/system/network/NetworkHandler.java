@@ -4,10 +4,16 @@ import java.net.InetAddress;
 import java.net.NetworkInterface;
 import java.net.SocketException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Enumeration;
+import java.util.Hashtable;
 import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.minima.Start;
+import org.minima.objects.base.MiniData;
 import org.minima.system.Main;
 import org.minima.system.input.InputHandler;
 import org.minima.system.network.minidapps.DAPPManager;
@@ -37,6 +43,8 @@ public class NetworkHandler extends MessageProcessor {
 	
 	public static final String NETWORK_SENDALL 		= "NETWORK_SENDALL";
 	
+	public static final String NETWORK_CHECKREQUESTS = "NETWORK_CHECKREQUESTS";
+	
 	public static final String NETWORK_WEBPROXY 	= "NETWORK_WEBPROXY";
 	
 	/**
@@ -60,15 +68,44 @@ public class NetworkHandler extends MessageProcessor {
 	WebSocketManager mWebSocketManager;
 	
 	/**
-	 * All the network channels..
+	 * All the network channels.. changed on the network thread, read from the consensus thread too
 	 */
-	ArrayList<MinimaClient> mClients 	= new ArrayList<>();
+	CopyOnWriteArrayList<MinimaClient> mClients = new CopyOnWriteArrayList<>();
 	
 	/**
-	 * A list of all the requested TxPoW messages.. 
+	 * All the requested TxPoW messages.. 
 	 * they could be invalid on arrival as in a different  ranch
 	 */
-	ArrayList<String> mRequestedTxPoW = new ArrayList<>();
+	RequestedTxPoW mRequestedTxPoW = new RequestedTxPoW();
+	
+	/**
+	 * What each peer already knows about - so it isn't told again.
+	 * Only added to with the client in NETWORK_NEWCLIENT - messages still queued for a client 
+	 * that has gone must not bring its entry back.
+	 */
+	ConcurrentHashMap<MinimaClient, PeerInventory> mInventory = new ConcurrentHashMap<>();
+	
+	/**
+	 * Traffic, latency and duplicates for each peer - only added to in NETWORK_NEWCLIENT
+	 */
+	ConcurrentHashMap<MinimaClient, PeerMetrics> mMetrics = new ConcurrentHashMap<>();
+	
+	/**
+	 * Peers that said in their Greeting they can read compressed lists - only added to in NETWORK_NEWCLIENT
+	 */
+	ConcurrentHashMap<MinimaClient, Boolean> mCompression = new ConcurrentHashMap<>();
+	
+	/**
+	 * The last score of each host:port we lost - to rank reconnects
+	 */
+	Hashtable<String, Double> mHostScores = new Hashtable<>();
+	
+	/**
+	 * Reconnect delay - for the best, a neutral and the worst peer
+	 */
+	public static final long RECONNECT_MIN 		= 10000;
+	public static final long RECONNECT_DELAY 	= 30000;
+	public static final long RECONNECT_MAX 		= 120000;
 	
 	/**
 	 * Is reconnect enabled or not ?
@@ -221,6 +258,9 @@ public class NetworkHandler extends MessageProcessor {
 			//Start the WebSocket Manager
 			mWebSocketManager = new WebSocketManager(getWSPort());
 			
+			//Check on the requested TxPoW
+			PostTimerMessage(new TimerMessage(10000, NETWORK_CHECKREQUESTS));
+			
 		}else if(zMessage.isMessageType(NETWORK_SHUTDOWN)) {
 			//Stop the server
 			try {mServer.stop();}catch(Exception exc) {}
@@ -297,11 +337,18 @@ public class NetworkHandler extends MessageProcessor {
 			
 			//Add it
 			mClients.add(client);
+			mInventory.put(client, new PeerInventory());
+			mMetrics.put(client, new PeerMetrics());
+			mCompression.put(client, false);
 			
 		}else if(zMessage.isMessageType(NETWORK_CLIENTERROR)) {
 			//get the client
 			MinimaClient client = (MinimaClient)zMessage.getObject("client");
 			
+			//Remember how good it was..
+			double score = getPeerMetrics(client).getScore();
+			mHostScores.put(client.getHost()+":"+client.getPort(), score);
+			
 			//Is it a reconnect-er ?
 			boolean reconnect = client.isReconnect();
 			if(reconnect && mGlobalReconnect) {
@@ -318,22 +365,28 @@ public class NetworkHandler extends MessageProcessor {
 				}
 				if(bootstrapnode) {
 					String oldhost = new String(host);
-					host = Start.VALID_BOOTSTRAP_NODES[new Random().nextInt(Start.VALID_BOOTSTRAP_NODES.length)];
+					host = getBestBootstrapNode(oldhost, port);
 					MinimaLogger.log("BOOTSTRAP NODE Connection lost.. resetting from "+oldhost+" to "+host);
 				}
 				
+				//Better peers are tried again sooner..
+				long delay = getReconnectDelay(getHostScore(host+":"+port));
+				
 				//And post a message..
-				TimerMessage  recon = new TimerMessage(30000,NETWORK_CONNECT);
+				TimerMessage  recon = new TimerMessage(delay,NETWORK_CONNECT);
 				recon.addString("host", host);
 				recon.addInteger("port", port);
 				
-				MinimaLogger.log("Attempting reconnect to "+host+":"+port+" in 30s..");
+				MinimaLogger.log("Attempting reconnect to "+host+":"+port+" in "+(delay/1000)+"s..");
 				
 				PostTimerMessage(recon);
 			}
 			
 			//Remove him from our list..
 			mClients.remove(client);
+			mInventory.remove(client);
+			mMetrics.remove(client);
+			mCompression.remove(client);
 		
 			//Shut him down..
 			client.PostMessage(new Message(MinimaClient.NETCLIENT_SHUTDOWN));
@@ -351,30 +404,184 @@ public class NetworkHandler extends MessageProcessor {
 			//Get the message to send
 			Message msg = (Message)zMessage.getObject("message");
 			
+			//Tell each peer a TxPoWID only if it doesn't already know it - still one message per ID
+			if(msg.isMessageType(MinimaClient.NETCLIENT_SENDTXPOWID)) {
+				MiniData txpowid = (MiniData)msg.getObject("txpowid");
+				String id 		 = txpowid.to0xString();
+				for(MinimaClient client : mClients) {
+					PeerInventory inv = getPeerInventory(client);
+					if(!inv.knows(id)) {
+						inv.add(id);
+						client.PostMessage(msg);
+						getPeerMetrics(client).messageOut("txpowid", txpowid.getLength());
+					}
+				}
+				return;
+			}
+			
 			//Send to all the clients..
 			for(MinimaClient client : mClients) {
 				client.PostMessage(msg);
 			}
+			
+		}else if(zMessage.isMessageType(NETWORK_CHECKREQUESTS)) {
+			//Any not answered..
+			ArrayList<RequestedTxPoW.Request> timedout = mRequestedTxPoW.getTimedOut();
+			for(RequestedTxPoW.Request req : timedout) {
+				//The peer didn't answer
+				if(req.getClient() != null) {
+					getPeerMetrics(req.getClient()).requestTimedOut();
+				}
+				
+				//Tried enough..
+				if(req.getAttempts() >= RequestedTxPoW.MAX_ATTEMPTS) {
+					mRequestedTxPoW.expired(req);
+					continue;
+				}
+				
+				//Ask someone else..
+				MinimaClient client = getOtherClient(req.getClient(), req.getTxPoWID());
+				if(client == null) {
+					mRequestedTxPoW.expired(req);
+					continue;
+				}
+				
+				mRequestedTxPoW.retried(req, client);
+				
+				Message retry = new Message(MinimaClient.NETCLIENT_SENDTXPOWREQ);
+				MiniData txpowid = new MiniData(req.getTxPoWID());
+				retry.addObject("txpowid", txpowid);
+				client.PostMessage(retry);
+				getPeerMetrics(client).messageOut("txpowrequest", txpowid.getLength());
+			}
+			
+			//And again..
+			PostTimerMessage(new TimerMessage(10000, NETWORK_CHECKREQUESTS));
 		}
 	}
 	
 	/**
-	 * When you request a TxPOW it may be invalid as from a different branch..
+	 * The best client that isn't this one - one that has the TxPoW if possible. null if none
 	 */
-	public void addRequestedInitialSyncTxPow(String zTxPoWID) {
-		if(!isRequestedInitialTxPow(zTxPoWID)){
-			mRequestedTxPoW.add("INIT_"+zTxPoWID);
+	private MinimaClient getOtherClient(MinimaClient zClient, String zTxPoWID) {
+		MinimaClient best 	= null;
+		double bestscore 	= -1;
+		boolean bestknows 	= false;
+		for(MinimaClient client : mClients) {
+			if(client == zClient) {
+				continue;
+			}
+			
+			boolean knows = getPeerInventory(client).knows(zTxPoWID);
+			double score  = getPeerMetrics(client).getScore();
+			if(best == null || (knows && !bestknows) || (knows == bestknows && score > bestscore)) {
+				best 		= client;
+				bestscore 	= score;
+				bestknows 	= knows;
+			}
 		}
+		
+		return best;
 	}
 	
-	public boolean isRequestedInitialTxPow(String zTxPoWID) {
-		return mRequestedTxPoW.contains("INIT_"+zTxPoWID);
+	/**
+	 * The best peer to ask for this TxPoW - the highest scoring that has it
+	 * 
+	 * @param zDefault The peer that told us about it
+	 */
+	public MinimaClient getBestPeer(MiniData zTxPoWID, MinimaClient zDefault) {
+		String id 			= zTxPoWID.to0xString();
+		MinimaClient best 	= zDefault;
+		double bestscore 	= getPeerMetrics(zDefault).getScore();
+		
+		for(MinimaClient client : mClients) {
+			if(client == zDefault || !getPeerInventory(client).knows(id)) {
+				continue;
+			}
+			
+			double score = getPeerMetrics(client).getScore();
+			if(score > bestscore) {
+				best 		= client;
+				bestscore 	= score;
+			}
+		}
+		
+		return best;
 	}
 	
-	public void addRequestedTxPow(String zTxPoWID) {
-		if(!isRequestedTxPow(zTxPoWID)) {
-			mRequestedTxPoW.add(zTxPoWID);	
+	/**
+	 * Best scoring first
+	 */
+	public void rankPeers(ArrayList<MinimaClient> zClients) {
+		final Hashtable<MinimaClient, Double> scores = new Hashtable<>();
+		for(MinimaClient client : zClients) {
+			scores.put(client, getPeerMetrics(client).getScore());
+		}
+		
+		Collections.sort(zClients, new Comparator<MinimaClient>() {
+			@Override
+			public int compare(MinimaClient zClient1, MinimaClient zClient2) {
+				return Double.compare(scores.get(zClient2), scores.get(zClient1));
+			}
+		});
+	}
+	
+	private double getHostScore(String zHostPort) {
+		Double score = mHostScores.get(zHostPort);
+		if(score == null) {
+			return PeerMetrics.NEUTRAL_SCORE;
+		}
+		return score.doubleValue();
+	}
+	
+	/**
+	 * RECONNECT_DELAY for a neutral peer - down to RECONNECT_MIN for the best, up to RECONNECT_MAX for the worst
+	 */
+	private long getReconnectDelay(double zScore) {
+		if(zScore >= PeerMetrics.NEUTRAL_SCORE) {
+			double better = (zScore - PeerMetrics.NEUTRAL_SCORE) / (1.0 - PeerMetrics.NEUTRAL_SCORE);
+			return RECONNECT_DELAY - (long)(better * (RECONNECT_DELAY - RECONNECT_MIN));
+		}
+		
+		double worse = (PeerMetrics.NEUTRAL_SCORE - zScore) / PeerMetrics.NEUTRAL_SCORE;
+		return RECONNECT_DELAY + (long)(worse * (RECONNECT_MAX - RECONNECT_DELAY));
+	}
+	
+	/**
+	 * The bootstrap node with the best last score - not the one just lost if there are others
+	 */
+	private String getBestBootstrapNode(String zLost, int zPort) {
+		ArrayList<String> best = new ArrayList<>();
+		double bestscore = -1;
+		for(String node : Start.VALID_BOOTSTRAP_NODES) {
+			if(node.equals(zLost) && Start.VALID_BOOTSTRAP_NODES.length > 1) {
+				continue;
+			}
+			
+			//Same key as when the score was kept
+			double score = getHostScore(node+":"+zPort);
+			if(score > bestscore) {
+				best.clear();
+				bestscore = score;
+			}
+			if(score == bestscore) {
+				best.add(node);
+			}
 		}
+		
+		//Random from the best..
+		return best.get(new Random().nextInt(best.size()));
+	}
+	
+	public void addRequestedTxPow(String zTxPoWID) {
+		mRequestedTxPoW.add(zTxPoWID, null);
+	}
+	
+	/**
+	 * Knowing the peer means it can be asked again from someone else if it doesn't answer
+	 */
+	public void addRequestedTxPow(String zTxPoWID, MinimaClient zClient) {
+		mRequestedTxPoW.add(zTxPoWID, zClient);
 	}
 	
 	public boolean isRequestedTxPow(String zTxPoWID) {
@@ -382,10 +589,12 @@ public class NetworkHandler extends MessageProcessor {
 	}
 	
 	public void removeRequestedTxPow(String zTxPoWID) {
-		//Remove link..
-		mRequestedTxPoW.remove(zTxPoWID);
-		//Just in case was an initial..
-		mRequestedTxPoW.remove("INIT_"+zTxPoWID);
+		RequestedTxPoW.Request req = mRequestedTxPoW.remove(zTxPoWID);
+		
+		//How long did the peer we asked take..
+		if(req != null && req.getClient() != null) {
+			getPeerMetrics(req.getClient()).requestAnswered(System.currentTimeMillis() - req.getTime());
+		}
 	}
 	
 	public void clearAllrequestedTxPow() {
@@ -396,12 +605,64 @@ public class NetworkHandler extends MessageProcessor {
 		return mRequestedTxPoW.size();
 	}
 	
+	/**
+	 * The inventory of a connected peer - an empty one that is not kept if it has gone
+	 */
+	private PeerInventory getPeerInventory(MinimaClient zClient) {
+		PeerInventory inv = mInventory.get(zClient);
+		if(inv == null) {
+			return new PeerInventory();
+		}
+		return inv;
+	}
+	
+	/**
+	 * This peer has the TxPoW - it told us about it or sent it. Ignored if the peer has gone.
+	 */
+	public void addPeerKnows(MinimaClient zClient, MiniData zTxPoWID) {
+		PeerInventory inv = mInventory.get(zClient);
+		if(inv != null) {
+			inv.add(zTxPoWID.to0xString());
+		}
+	}
+	
+	/**
+	 * The metrics for this peer - if it has gone a new one that is not kept, so late 
+	 * messages for it are counted nowhere
+	 */
+	public PeerMetrics getPeerMetrics(MinimaClient zClient) {
+		PeerMetrics metrics = mMetrics.get(zClient);
+		if(metrics == null) {
+			return new PeerMetrics();
+		}
+		return metrics;
+	}
+	
+	/**
+	 * Only for a connected peer - a Greeting processed after it has gone is ignored
+	 */
+	public void setPeerCompression(MinimaClient zClient, boolean zCompression) {
+		mCompression.replace(zClient, zCompression);
+	}
+	
+	/**
+	 * Can we send this peer compressed data - false until its Greeting arrives
+	 */
+	public boolean isPeerCompression(MinimaClient zClient) {
+		Boolean comp = mCompression.get(zClient);
+		return comp != null && comp;
+	}
+	
+	public RequestedTxPoW getRequestedTxPoW() {
+		return mRequestedTxPoW;
+	}
+	
 	/**
 	 * Get all the current net clients..
-	 * @return the list
+	 * @return a copy of the list - safe to use on any thread
 	 */
 	public ArrayList<MinimaClient> getNetClients() {
-		return mClients;
+		return new ArrayList<>(mClients);
 	}
 	
 }
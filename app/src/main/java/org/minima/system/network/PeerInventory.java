@@ -0,0 +1,42 @@
+package org.minima.system.network;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The TxPoWIDs a peer is known to have - because it told us about them or we told it.
+ *
+ * No need to announce those to it again. Only the most recent are kept.
+ *
+ * @author spartacusrex
+ */
+public class PeerInventory {
+
+	/**
+	 * How many TxPoWIDs to remember per peer
+	 */
+	public static final int MAX_KNOWN = 20000;
+
+	LinkedHashMap<String, Boolean> mKnown;
+
+	public PeerInventory() {
+		mKnown = new LinkedHashMap<String, Boolean>() {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Boolean> zEldest) {
+				return size() > MAX_KNOWN;
+			}
+		};
+	}
+
+	public synchronized void add(String zTxPoWID) {
+		mKnown.put(zTxPoWID, Boolean.TRUE);
+	}
+
+	public synchronized boolean knows(String zTxPoWID) {
+		return mKnown.containsKey(zTxPoWID);
+	}
+
+	public synchronized int size() {
+		return mKnown.size();
+	}
+}
@@ -0,0 +1,196 @@
+package org.minima.system.network;
+
+import java.util.Enumeration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.minima.utils.json.JSONObject;
+
+/**
+ * What one peer has sent us and we have sent it.
+ *
+ * Updated from the network and consensus threads with no locks, and read by the
+ * network command. Used to find slow or abusive peers and see how much of what is
+ * relayed to us we already had.
+ *
+ * The score combines delivery, latency and valid data - used to pick which peer to
+ * ask for TxPoW and which to reconnect to first.
+ *
+ * @author spartacusrex
+ */
+public class PeerMetrics {
+
+	/**
+	 * The score of a peer nothing is known about
+	 */
+	public static final double NEUTRAL_SCORE = 0.5;
+
+	/**
+	 * Latency that halves the score
+	 */
+	public static final double LATENCY_HALF = 2000;
+
+	long mConnected;
+
+	/**
+	 * Traffic
+	 */
+	AtomicLong mBytesIn 		= new AtomicLong();
+	AtomicLong mBytesOut 		= new AtomicLong();
+	AtomicLong mMessagesIn 		= new AtomicLong();
+	AtomicLong mMessagesOut 	= new AtomicLong();
+
+	/**
+	 * Message counts by type
+	 */
+	ConcurrentHashMap<String, AtomicLong> mTypesIn 	= new ConcurrentHashMap<>();
+	ConcurrentHashMap<String, AtomicLong> mTypesOut = new ConcurrentHashMap<>();
+
+	/**
+	 * Requests we sent it - how long the answers took
+	 */
+	AtomicLong mRequestsAnswered 	= new AtomicLong();
+	AtomicLong mRequestsTimedOut 	= new AtomicLong();
+	AtomicLong mLatencyTotal 		= new AtomicLong();
+	AtomicLong mLatencyMax 			= new AtomicLong();
+
+	/**
+	 * TxPoW it sent and how many we already had
+	 */
+	AtomicLong mTxPoWIn 		= new AtomicLong();
+	AtomicLong mTxPoWDuplicate 	= new AtomicLong();
+
+	/**
+	 * Data it sent that failed the checks
+	 */
+	AtomicLong mInvalid 		= new AtomicLong();
+
+	public PeerMetrics() {
+		mConnected = System.currentTimeMillis();
+	}
+
+	private void addType(ConcurrentHashMap<String, AtomicLong> zTypes, String zType) {
+		AtomicLong count = zTypes.get(zType);
+		if(count == null) {
+			count = new AtomicLong();
+			AtomicLong prev = zTypes.putIfAbsent(zType, count);
+			if(prev != null) {
+				count = prev;
+			}
+		}
+		count.incrementAndGet();
+	}
+
+	public void messageIn(String zType, long zBytes) {
+		mMessagesIn.incrementAndGet();
+		mBytesIn.addAndGet(zBytes);
+		addType(mTypesIn, zType);
+	}
+
+	public void messageOut(String zType, long zBytes) {
+		mMessagesOut.incrementAndGet();
+		mBytesOut.addAndGet(zBytes);
+		addType(mTypesOut, zType);
+	}
+
+	public void requestAnswered(long zLatency) {
+		mRequestsAnswered.incrementAndGet();
+		mLatencyTotal.addAndGet(zLatency);
+
+		//Keep the biggest
+		long max = mLatencyMax.get();
+		while(zLatency > max && !mLatencyMax.compareAndSet(max, zLatency)) {
+			max = mLatencyMax.get();
+		}
+	}
+
+	public void requestTimedOut() {
+		mRequestsTimedOut.incrementAndGet();
+	}
+
+	public void txpowIn(boolean zDuplicate) {
+		mTxPoWIn.incrementAndGet();
+		if(zDuplicate) {
+			mTxPoWDuplicate.incrementAndGet();
+		}
+	}
+
+	public void invalidData() {
+		mInvalid.incrementAndGet();
+	}
+
+	/**
+	 * Between 0 and 1 - higher is better. A new peer is NEUTRAL_SCORE.
+	 */
+	public double getScore() {
+		long answered = mRequestsAnswered.get();
+		long timedout = mRequestsTimedOut.get();
+
+		//Answers what it is asked for.. starts at 0.5 with no data
+		double delivery = (answered + 1.0) / (answered + timedout + 2.0);
+
+		//Answers quickly.. 1 when instant, 0.5 at LATENCY_HALF
+		double latency 	= 1.0;
+		if(answered > 0) {
+			double avg 	= (double)mLatencyTotal.get() / answered;
+			latency 	= LATENCY_HALF / (LATENCY_HALF + avg);
+		}
+
+		//Sends valid data..
+		long txpow 		= mTxPoWIn.get();
+		double validity = 1.0 / (1.0 + (5.0 * mInvalid.get()) / (txpow + 1.0));
+
+		return delivery * latency * validity;
+	}
+
+	public long getTxPoWIn() {
+		return mTxPoWIn.get();
+	}
+
+	public long getTxPoWDuplicate() {
+		return mTxPoWDuplicate.get();
+	}
+
+	private JSONObject typesToJSON(ConcurrentHashMap<String, AtomicLong> zTypes) {
+		JSONObject types = new JSONObject();
+		Enumeration<String> keys = zTypes.keys();
+		while(keys.hasMoreElements()) {
+			String key = keys.nextElement();
+			types.put(key, zTypes.get(key).get());
+		}
+		return types;
+	}
+
+	public JSONObject toJSON() {
+		JSONObject ret = new JSONObject();
+
+		long secs = Math.max(1, (System.currentTimeMillis() - mConnected) / 1000);
+		ret.put("connected", secs);
+
+		ret.put("bytesin", mBytesIn.get());
+		ret.put("bytesout", mBytesOut.get());
+		ret.put("messagesin", mMessagesIn.get());
+		ret.put("messagesout", mMessagesOut.get());
+		ret.put("ratein", String.format("%.2f", (double)mMessagesIn.get() / secs));
+		ret.put("rateout", String.format("%.2f", (double)mMessagesOut.get() / secs));
+		ret.put("typesin", typesToJSON(mTypesIn));
+		ret.put("typesout", typesToJSON(mTypesOut));
+
+		long answered = mRequestsAnswered.get();
+		ret.put("answered", answered);
+		ret.put("timedout", mRequestsTimedOut.get());
+		ret.put("latencyavg", answered == 0 ? 0 : mLatencyTotal.get() / answered);
+		ret.put("latencymax", mLatencyMax.get());
+
+		long txpow = mTxPoWIn.get();
+		long dups  = mTxPoWDuplicate.get();
+		ret.put("txpowin", txpow);
+		ret.put("duplicates", dups);
+		ret.put("duplicaterate", String.format("%.2f", txpow == 0 ? 0.0 : (double)dups / txpow));
+		ret.put("invalid", mInvalid.get());
+
+		ret.put("score", String.format("%.3f", getScore()));
+
+		return ret;
+	}
+}
@@ -0,0 +1,168 @@
+package org.minima.system.network;
+
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.minima.utils.json.JSONObject;
+
+/**
+ * All the TxPoW requested from peers and not yet received.
+ *
+ * Keyed by TxPoWID so checking is quick however many are in flight. Each request knows
+ * which peer it went to and when, so ones that are never answered can be asked for
+ * again from someone else or dropped.
+ *
+ * Used from the network and consensus threads.
+ *
+ * @author spartacusrex
+ */
+public class RequestedTxPoW {
+
+	/**
+	 * How long to wait for an answer
+	 */
+	public static final long REQUEST_TIMEOUT = 20000;
+
+	/**
+	 * How many peers to ask before giving up
+	 */
+	public static final int MAX_ATTEMPTS = 3;
+
+	/**
+	 * Changed by the network and consensus threads - updates are synchronized on the Request
+	 */
+	public class Request {
+		String mTxPoWID;
+		volatile MinimaClient mClient;
+		volatile long mTime;
+		volatile int mAttempts;
+
+		public Request(String zTxPoWID, MinimaClient zClient) {
+			mTxPoWID 	= zTxPoWID;
+			mClient 	= zClient;
+			mTime 		= System.currentTimeMillis();
+			mAttempts 	= 1;
+		}
+
+		public String getTxPoWID() {
+			return mTxPoWID;
+		}
+
+		public MinimaClient getClient() {
+			return mClient;
+		}
+
+		public long getTime() {
+			return mTime;
+		}
+		
+		public int getAttempts() {
+			return mAttempts;
+		}
+	}
+
+	ConcurrentHashMap<String, Request> mRequests;
+
+	/**
+	 * Metrics
+	 */
+	AtomicLong mTotalRequested 	= new AtomicLong();
+	AtomicLong mTotalReceived 	= new AtomicLong();
+	AtomicLong mTotalRetried 	= new AtomicLong();
+	AtomicLong mTotalExpired 	= new AtomicLong();
+
+	public RequestedTxPoW() {
+		mRequests = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Add a request - if already requested keeps the original peer and time
+	 */
+	public void add(String zTxPoWID, MinimaClient zClient) {
+		Request req = new Request(zTxPoWID, zClient);
+		Request prev = mRequests.putIfAbsent(zTxPoWID, req);
+		if(prev == null) {
+			mTotalRequested.incrementAndGet();
+		}else {
+			synchronized(prev) {
+				if(prev.mClient == null) {
+					prev.mClient = zClient;
+				}
+			}
+		}
+	}
+
+	public boolean contains(String zTxPoWID) {
+		return mRequests.containsKey(zTxPoWID);
+	}
+
+	/**
+	 * It has arrived
+	 */
+	public Request remove(String zTxPoWID) {
+		Request req = mRequests.remove(zTxPoWID);
+		if(req != null) {
+			mTotalReceived.incrementAndGet();
+		}
+		return req;
+	}
+
+	public void clear() {
+		mRequests.clear();
+	}
+
+	public int size() {
+		return mRequests.size();
+	}
+
+	/**
+	 * All the requests that have not been answered in time
+	 */
+	public ArrayList<Request> getTimedOut() {
+		ArrayList<Request> timedout = new ArrayList<>();
+		long mintime = System.currentTimeMillis() - REQUEST_TIMEOUT;
+
+		Enumeration<Request> reqs = mRequests.elements();
+		while(reqs.hasMoreElements()) {
+			Request req = reqs.nextElement();
+			if(req.mTime < mintime) {
+				timedout.add(req);
+			}
+		}
+
+		return timedout;
+	}
+
+	/**
+	 * Sent to another peer
+	 */
+	public void retried(Request zRequest, MinimaClient zClient) {
+		synchronized(zRequest) {
+			zRequest.mClient 	= zClient;
+			zRequest.mTime 		= System.currentTimeMillis();
+			zRequest.mAttempts++;
+		}
+		mTotalRetried.incrementAndGet();
+	}
+
+	/**
+	 * Given up on
+	 */
+	public void expired(Request zRequest) {
+		if(mRequests.remove(zRequest.mTxPoWID, zRequest)) {
+			mTotalExpired.incrementAndGet();
+		}
+	}
+
+	public JSONObject toJSON() {
+		JSONObject ret = new JSONObject();
+		ret.put("outstanding", mRequests.size());
+		ret.put("requested", mTotalRequested.get());
+		ret.put("received", mTotalReceived.get());
+		ret.put("retried", mTotalRetried.get());
+		ret.put("expired", mTotalExpired.get());
+		return ret;
+	}
+}
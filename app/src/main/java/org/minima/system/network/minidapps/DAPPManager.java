@@ -119,6 +119,13 @@ public class DAPPManager extends MessageProcessor {
 		return MINIDAPPS_FOLDER;
 	}
 	
+	/**
+	 * Is there any MiniDAPP to send events to
+	 */
+	public boolean hasListeners() {
+		return mBackends.size() > 0 || CURRENT_MINIDAPPS.size() > 0;
+	}
+	
 	private JSONObject loadConfFile(File zConf) {
 		JSONObject ret = new JSONObject();
 		
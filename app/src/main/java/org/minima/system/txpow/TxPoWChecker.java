@@ -49,6 +49,11 @@ public class TxPoWChecker {
 			return true;
 		}
 		
+		//A body that could not be read is never valid
+		if(!zTxPOW.isBodyValid()) {
+			return false;
+		}
+		
 		//get the Transaction..
 		Transaction trans = zTxPOW.getTransaction();
 		
@@ -99,8 +104,8 @@ public class TxPoWChecker {
 	
 	public static boolean checkTransactionMMR(TxPoW zTxPOW, MinimaDB zDB, 
 				TxPoW zBlock, MiniNumber zTransNumber, MMRSet zMMRSet, boolean zTouchMMR) {
-		//need a body
-		if(!zTxPOW.hasBody()) {
+		//need a body - that could be read
+		if(!zTxPOW.hasBody() || !zTxPOW.isBodyValid()) {
 			return false;
 		}
 			
@@ -0,0 +1,167 @@
+package org.minima.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.minima.objects.TxPoW;
+import org.minima.objects.greet.TxPoWList;
+import org.minima.utils.json.JSONObject;
+
+/**
+ * Deflate for the bulk network messages.
+ *
+ * TxPoW repeat the same 32 and 64 byte hashes over and over - the super parents of
+ * consecutive blocks, coin IDs, addresses. Deflate's back references pick those up
+ * as well as the rest of the data, so there is no separate hash dictionary.
+ *
+ * Keeps a count of the bytes that would have been sent and the bytes that were.
+ *
+ * @author spartacusrex
+ */
+public class Compressor {
+	
+	/**
+	 * Smaller than this is sent as is
+	 */
+	public static final int COMPRESS_MIN = 4096;
+	
+	/**
+	 * Totals for everything sent
+	 */
+	private static AtomicLong mRawBytes 	= new AtomicLong();
+	private static AtomicLong mWireBytes 	= new AtomicLong();
+	private static AtomicLong mCompressed 	= new AtomicLong();
+	
+	public static byte[] compress(byte[] zData) {
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try {
+			deflater.setInput(zData);
+			deflater.finish();
+			
+			ByteArrayOutputStream baos = new ByteArrayOutputStream(zData.length / 2 + 64);
+			byte[] buffer = new byte[8192];
+			while(!deflater.finished()) {
+				int len = deflater.deflate(buffer);
+				baos.write(buffer, 0, len);
+			}
+			
+			return baos.toByteArray();
+		}finally {
+			deflater.end();
+		}
+	}
+	
+	/**
+	 * Inflates into a buffer that only grows as the data really inflates - the length the
+	 * peer declares is checked but never allocated up front.
+	 * 
+	 * @param zRawLength What it should inflate to - never more than this is made
+	 */
+	public static byte[] decompress(byte[] zData, int zRawLength, int zMaxLength) throws IOException {
+		if(zRawLength < 0 || zRawLength > zMaxLength) {
+			throw new IOException("Compressed data too large "+zRawLength+" / "+zMaxLength);
+		}
+		
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(zData);
+			
+			ByteArrayOutputStream baos = new ByteArrayOutputStream(Math.min(zRawLength, 8192));
+			byte[] buffer = new byte[8192];
+			while(!inflater.finished()) {
+				int len = inflater.inflate(buffer);
+				if(len == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+				
+				if(baos.size() + len > zRawLength) {
+					throw new IOException("Compressed data longer than declared "+zRawLength);
+				}
+				baos.write(buffer, 0, len);
+			}
+			
+			if(baos.size() != zRawLength || !inflater.finished()) {
+				throw new IOException("Compressed data length mismatch "+baos.size()+" / "+zRawLength);
+			}
+			
+			return baos.toByteArray();
+			
+		}catch(DataFormatException exc) {
+			throw new IOException("Invalid compressed data "+exc);
+		}finally {
+			inflater.end();
+		}
+	}
+	
+	/**
+	 * A bulk message was sent
+	 */
+	public static void sent(long zRawBytes, long zWireBytes, boolean zCompressed) {
+		mRawBytes.addAndGet(zRawBytes);
+		mWireBytes.addAndGet(zWireBytes);
+		if(zCompressed) {
+			mCompressed.incrementAndGet();
+		}
+	}
+	
+	public static JSONObject getStatsJSON() {
+		long raw  = mRawBytes.get();
+		long wire = mWireBytes.get();
+		
+		JSONObject ret = new JSONObject();
+		ret.put("compressed", mCompressed.get());
+		ret.put("rawbytes", raw);
+		ret.put("wirebytes", wire);
+		ret.put("saved", raw - wire);
+		ret.put("ratio", String.format("%.3f", raw == 0 ? 1.0 : (double)wire / raw));
+		return ret;
+	}
+	
+	/**
+	 * How much an Initial Sync would save - run on a folder of backed up TxPoW
+	 */
+	public static void main(String[] zArgs) throws Exception {
+		if(zArgs.length < 1) {
+			System.out.println("Usage : Compressor txpowfolder");
+			return;
+		}
+		
+		File[] files = new File(zArgs[0]).listFiles();
+		if(files == null) {
+			System.out.println("Not a folder : "+zArgs[0]);
+			return;
+		}
+		
+		TxPoWList txplist = new TxPoWList();
+		for(File txfile : files) {
+			try {
+				txplist.addTxPow(TxPoW.ReadLazyFromData(Files.readAllBytes(txfile.toPath())));
+			}catch(IOException exc) {
+				System.out.println("Skipping "+txfile.getName()+" "+exc);
+			}
+		}
+		
+		byte[] raw = txplist.getUncompressedData();
+		
+		long timenow = System.currentTimeMillis();
+		byte[] comp  = compress(raw);
+		long comptime = System.currentTimeMillis() - timenow;
+		
+		timenow = System.currentTimeMillis();
+		decompress(comp, raw.length, raw.length);
+		long decomptime = System.currentTimeMillis() - timenow;
+		
+		System.out.println("TxPoW        : "+txplist.size());
+		System.out.println("Raw          : "+MiniFormat.formatSize(raw.length));
+		System.out.println("Compressed   : "+MiniFormat.formatSize(comp.length));
+		System.out.println("Saved        : "+String.format("%.1f", 100.0 - (100.0 * comp.length / raw.length))+"%");
+		System.out.println("Compress     : "+comptime+"ms");
+		System.out.println("Decompress   : "+decomptime+"ms");
+	}
+}
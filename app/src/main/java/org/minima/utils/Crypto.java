@@ -84,11 +84,18 @@ public class Crypto {
 	}
 	
 	public byte[] hashData(byte[] zData, int zBitLength){
+		return hashData(zData, 0, zData.length, zBitLength);
+	}
+
+	/**
+	 * Hash a section of a byte array - saves copying it out first
+	 */
+	public byte[] hashData(byte[] zData, int zOffset, int zLength, int zBitLength){
 		try {
 			//Bouncy..
 			Digest keccak = new KeccakDigest(zBitLength);
 			byte[] output = new byte[keccak.getDigestSize()];
-			keccak.update(zData, 0, zData.length);
+			keccak.update(zData, zOffset, zLength);
 			keccak.doFinal(output, 0);
 			return output;
 		}catch(Exception exc) {
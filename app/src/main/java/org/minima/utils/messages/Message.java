@@ -21,6 +21,12 @@ public class Message {
 	 */
 	private String mMessageType;
 	
+	/**
+	 * The interned ID of the type - worked out when first asked for
+	 */
+	private static final int TYPEID_UNSET = -2;
+	private int mTypeID = TYPEID_UNSET;
+	
 	/**
 	 * The Contents of the Message
 	 */
@@ -57,6 +63,7 @@ public class Message {
 	 */
 	public void setMessageType(String zMessageType) {
 		mMessageType = zMessageType;
+		mTypeID      = TYPEID_UNSET;
 	}
 	
 	/**
@@ -67,6 +74,18 @@ public class Message {
 		return mMessageType;
 	}
 	
+	/**
+	 * Get the interned ID of the message type
+	 * 
+	 * @return The ID or MessageTypes.NO_ID
+	 */
+	public int getMessageTypeID() {
+		if(mTypeID == TYPEID_UNSET) {
+			mTypeID = MessageTypes.getID(mMessageType);
+		}
+		return mTypeID;
+	}
+	
 	/**
 	 * Check if the message is of a certain type
 	 * 
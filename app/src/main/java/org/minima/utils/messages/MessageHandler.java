@@ -0,0 +1,11 @@
+package org.minima.utils.messages;
+
+/**
+ * Anything a MessageRouter can send messages to
+ *
+ * @author spartacusrex
+ */
+public interface MessageHandler {
+
+	public void processMessage(Message zMessage) throws Exception;
+}
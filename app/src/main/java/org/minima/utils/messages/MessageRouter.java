@@ -0,0 +1,179 @@
+package org.minima.utils.messages;
+
+import java.util.ArrayList;
+import java.util.Hashtable;
+
+/**
+ * Sends each message to its handler with one array lookup.
+ *
+ * Handlers are added for an exact message type or for a type prefix. The first message of
+ * each type works out its handler the slow way, and after that it is stored by type ID.
+ *
+ * Not thread safe - used by the MessageProcessor that owns it.
+ *
+ * @author spartacusrex
+ */
+public class MessageRouter {
+
+	/**
+	 * Exact types
+	 */
+	Hashtable<String, MessageHandler> mTypes;
+
+	/**
+	 * Prefixes - checked in the order added
+	 */
+	ArrayList<String> mPrefixes;
+	ArrayList<MessageHandler> mPrefixHandlers;
+
+	/**
+	 * The resolved handlers by type ID
+	 */
+	MessageHandler[] mTable;
+	boolean[] mResolved;
+
+	public MessageRouter() {
+		mTypes 			= new Hashtable<>();
+		mPrefixes 		= new ArrayList<>();
+		mPrefixHandlers = new ArrayList<>();
+
+		mTable 			= new MessageHandler[MessageTypes.MAX_TYPES];
+		mResolved 		= new boolean[MessageTypes.MAX_TYPES];
+	}
+
+	public void addType(String zMessageType, MessageHandler zHandler) {
+		mTypes.put(zMessageType, zHandler);
+		reset();
+	}
+
+	public void addPrefix(String zPrefix, MessageHandler zHandler) {
+		mPrefixes.add(zPrefix);
+		mPrefixHandlers.add(zHandler);
+		reset();
+	}
+
+	private void reset() {
+		mTable 		= new MessageHandler[MessageTypes.MAX_TYPES];
+		mResolved 	= new boolean[MessageTypes.MAX_TYPES];
+	}
+
+	/**
+	 * Which handler - null if none
+	 */
+	public MessageHandler getHandler(Message zMessage) {
+		int id = zMessage.getMessageTypeID();
+		if(id == MessageTypes.NO_ID) {
+			return resolve(zMessage.getMessageType());
+		}
+
+		if(!mResolved[id]) {
+			mTable[id] 		= resolve(zMessage.getMessageType());
+			mResolved[id] 	= true;
+		}
+
+		return mTable[id];
+	}
+
+	private MessageHandler resolve(String zMessageType) {
+		MessageHandler handler = mTypes.get(zMessageType);
+		if(handler != null) {
+			return handler;
+		}
+
+		int len = mPrefixes.size();
+		for(int i=0;i<len;i++) {
+			if(zMessageType.startsWith(mPrefixes.get(i))) {
+				return mPrefixHandlers.get(i);
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Send the message to its handler
+	 *
+	 * @return false if there is no handler
+	 */
+	public boolean route(Message zMessage) throws Exception {
+		MessageHandler handler = getHandler(zMessage);
+		if(handler == null) {
+			return false;
+		}
+
+		handler.processMessage(zMessage);
+		return true;
+	}
+
+	/**
+	 * Cost per message - the old string chain against the router
+	 */
+	public static void main(String[] zArgs) throws Exception {
+		final int PREFIXES 	= 5;
+		final int TYPES 	= 15;
+		final int MESSAGES 	= 5000000;
+		final int ROUNDS 	= 5;
+
+		//Like the Consensus processors..
+		String[] prefixes = new String[PREFIXES];
+		String[] types 	  = new String[PREFIXES * TYPES];
+		for(int i=0;i<PREFIXES;i++) {
+			prefixes[i] = "CONSENSUS"+i+"_";
+			for(int j=0;j<TYPES;j++) {
+				types[i*TYPES + j] = prefixes[i]+"MESSAGE_"+j;
+			}
+		}
+
+		//A few handled directly first
+		String[] direct = new String[] {"CONSENSUS_PROCESSTXPOW", "CONSENSUS_AUTOBACKUP"};
+
+		final long[] counter = new long[1];
+		MessageHandler counthandler = new MessageHandler() {
+			@Override
+			public void processMessage(Message zMessage) throws Exception {
+				counter[0]++;
+			}
+		};
+
+		MessageRouter router = new MessageRouter();
+		for(String prefix : prefixes) {
+			router.addPrefix(prefix, counthandler);
+		}
+
+		for(int round=0;round<ROUNDS;round++) {
+			//The string chain
+			counter[0] = 0;
+			long timenow = System.nanoTime();
+			for(int i=0;i<MESSAGES;i++) {
+				Message msg = new Message(types[i % types.length]);
+				if(msg.isMessageType(direct[0])) {
+					counter[0]++;
+				}else if(msg.isMessageType(direct[1])) {
+					counter[0]++;
+				}else {
+					for(String prefix : prefixes) {
+						if(msg.getMessageType().startsWith(prefix)) {
+							counthandler.processMessage(msg);
+							break;
+						}
+					}
+				}
+			}
+			long chaintime = System.nanoTime() - timenow;
+
+			//The router
+			counter[0] = 0;
+			timenow = System.nanoTime();
+			for(int i=0;i<MESSAGES;i++) {
+				Message msg = new Message(types[i % types.length]);
+				router.route(msg);
+			}
+			long routetime = System.nanoTime() - timenow;
+
+			System.out.println("Round "+round
+					+" chain : "+(chaintime / MESSAGES)+"ns/msg"
+					+" router : "+(routetime / MESSAGES)+"ns/msg"
+					+" handled : "+counter[0]);
+		}
+	}
+}
@@ -0,0 +1,71 @@
+package org.minima.utils.messages;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Every message type gets a small integer ID the first time it is seen.
+ *
+ * The same type always has the same ID for the life of the node, so handlers can be
+ * looked up in an array rather than by comparing strings.
+ *
+ * @author spartacusrex
+ */
+public class MessageTypes {
+
+	/**
+	 * Message types are constants - anything past this is not given an ID
+	 */
+	public static final int MAX_TYPES = 4096;
+
+	/**
+	 * No ID - too many types
+	 */
+	public static final int NO_ID = -1;
+
+	private static final ConcurrentHashMap<String, Integer> mTypeIDs = new ConcurrentHashMap<>();
+
+	private static final String[] mTypeNames = new String[MAX_TYPES];
+
+	private static int mNextID = 0;
+
+	/**
+	 * Get the ID for this type - creating it if new
+	 */
+	public static int getID(String zMessageType) {
+		Integer id = mTypeIDs.get(zMessageType);
+		if(id != null) {
+			return id.intValue();
+		}
+
+		return createID(zMessageType);
+	}
+
+	private static synchronized int createID(String zMessageType) {
+		//Check again inside the lock..
+		Integer id = mTypeIDs.get(zMessageType);
+		if(id != null) {
+			return id.intValue();
+		}
+
+		if(mNextID >= MAX_TYPES) {
+			return NO_ID;
+		}
+
+		int newid = mNextID++;
+		mTypeNames[newid] = zMessageType;
+		mTypeIDs.put(zMessageType, newid);
+
+		return newid;
+	}
+
+	public static String getName(int zID) {
+		if(zID < 0 || zID >= MAX_TYPES) {
+			return null;
+		}
+		return mTypeNames[zID];
+	}
+
+	public static synchronized int getSize() {
+		return mNextID;
+	}
+}
@@ -0,0 +1,76 @@
+package org.minima.objects;
+
+import org.junit.Test;
+import org.minima.objects.base.MiniData;
+import org.minima.objects.base.MiniNumber;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * The lazy TxPoW read must give back the same TxPoW it was written from
+ */
+public class TxPoWTest {
+
+    private static TxPoW createTxPoW() {
+        Transaction trans = new Transaction();
+        trans.addOutput(new Coin(MiniData.getRandomData(32), MiniData.getRandomData(32), new MiniNumber("10"), MiniData.getRandomData(1)));
+
+        TxPoW txpow = new TxPoW();
+        txpow.setTransaction(trans);
+        txpow.setBlockNumber(new MiniNumber(12));
+        txpow.setHeaderBodyHash();
+        txpow.calculateTXPOWID();
+
+        return txpow;
+    }
+
+    private static byte[] getBytes(TxPoW zTxPoW) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(baos);
+        zTxPoW.writeDataStream(dos);
+        dos.flush();
+        return baos.toByteArray();
+    }
+
+    @Test
+    public void readLazy_withBody() throws IOException {
+        TxPoW txpow = createTxPoW();
+        byte[] data = getBytes(txpow);
+
+        TxPoW lazy = TxPoW.ReadLazyFromData(data);
+
+        assertTrue(lazy.hasBody());
+        assertTrue(lazy.getTxPowID().isEqual(txpow.getTxPowID()));
+        assertTrue(lazy.getCalculatedBodyHash().isEqual(txpow.getTxHeaderBodyHash()));
+        assertEquals(data.length, lazy.getSizeinBytes());
+
+        //Decode the body
+        assertTrue(lazy.isBodyValid());
+        assertEquals(1, lazy.getTransaction().getAllOutputs().size());
+        assertArrayEquals(data, getBytes(lazy));
+    }
+
+    @Test
+    public void readLazy_headerOnly() throws IOException {
+        TxPoW txpow = createTxPoW();
+
+        TxPoW header = TxPoW.ReadLazyFromData(getBytes(txpow.getHeaderOnly()));
+
+        assertFalse(header.hasBody());
+        assertTrue(header.getTxPowID().isEqual(txpow.getTxPowID()));
+    }
+
+    @Test(expected = IOException.class)
+    public void readLazy_bodyMismatch() throws IOException {
+        TxPoW txpow = createTxPoW();
+        byte[] data = getBytes(txpow);
+
+        //Change the last byte of the body
+        data[data.length - 1] ^= 1;
+        TxPoW.ReadLazyFromData(data);
+    }
+}
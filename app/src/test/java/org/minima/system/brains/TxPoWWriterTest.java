@@ -0,0 +1,38 @@
+package org.minima.system.brains;
+
+import org.junit.Test;
+import org.minima.objects.Coin;
+import org.minima.objects.Transaction;
+import org.minima.objects.TxPoW;
+import org.minima.objects.base.MiniData;
+import org.minima.objects.base.MiniNumber;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * The TxPoW the writer and the events thread read back must be the one posted
+ */
+public class TxPoWWriterTest {
+
+    @Test
+    public void txpowData_withBody() throws IOException {
+        Transaction trans = new Transaction();
+        trans.addOutput(new Coin(MiniData.getRandomData(32), MiniData.getRandomData(32), new MiniNumber("10"), MiniData.getRandomData(1)));
+
+        TxPoW txpow = new TxPoW();
+        txpow.setTransaction(trans);
+        txpow.setHeaderBodyHash();
+        txpow.calculateTXPOWID();
+
+        MiniData data = TxPoWWriter.getTxPoWData(txpow);
+        TxPoW copy = TxPoWWriter.readTxPoWData(data);
+
+        assertNotSame(txpow, copy);
+        assertTrue(copy.hasBody());
+        assertTrue(copy.getTxPowID().isEqual(txpow.getTxPowID()));
+        assertEquals(1, copy.getTransaction().getAllOutputs().size());
+        assertTrue(TxPoWWriter.getTxPoWData(copy).isEqual(data));
+    }
+}